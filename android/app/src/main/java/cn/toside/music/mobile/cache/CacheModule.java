@@ -7,6 +7,8 @@ import com.facebook.react.bridge.ReactMethod;
 
 import java.io.File;
 
+import cn.toside.music.mobile.lyric.LyricCache;
+
 import static cn.toside.music.mobile.cache.Utils.clearCacheFolder;
 import static cn.toside.music.mobile.cache.Utils.getDirSize;
 import static cn.toside.music.mobile.cache.Utils.isMethodsCompat;
@@ -31,7 +33,7 @@ public class CacheModule extends ReactContextBaseJavaModule {
     // 计算缓存大小
     long fileSize = 0;
     // File filesDir = getReactApplicationContext().getFilesDir();// /data/data/package_name/files
-    File cacheDir = getReactApplicationContext().getCacheDir();// /data/data/package_name/cache
+    File cacheDir = getReactApplicationContext().getCacheDir();// /data/data/package_name/cache, include the parsed lyric cache
     // fileSize += getDirSize(filesDir);
     fileSize += getDirSize(cacheDir);
     // 2.2版本才有将应用缓存转移到sd卡的功能
@@ -61,6 +63,7 @@ public class CacheModule extends ReactContextBaseJavaModule {
     getReactApplicationContext().deleteDatabase("webviewCache.db");
     getReactApplicationContext().deleteDatabase("webviewCache.db-shm");
     getReactApplicationContext().deleteDatabase("webviewCache.db-wal");
+    LyricCache.getInstance(getReactApplicationContext()).clear();
     //清除数据缓存
     // clearCacheFolder(getReactApplicationContext().getFilesDir(), System.currentTimeMillis());
     clearCacheFolder(getReactApplicationContext().getCacheDir(), System.currentTimeMillis());
@@ -0,0 +1,225 @@
+package cn.toside.music.mobile.lyric;
+
+import java.util.Arrays;
+
+/**
+ * Single pass LRC tokenizer
+ * Walks the lyric string line by line and yields the time tags of every line that has a leading
+ * time field and non-empty text, without regex or intermediate arrays.
+ * The accepted syntax mirrors the former patterns:
+ * time field `^(?:\[[\d:.]+])+` and time tag `\d{1,3}(:\d{1,3}){0,2}(?:\.\d{1,3})`
+ * Word time tags `<mm:ss.xx>` in the text are removed from it and kept as the word times
+ */
+final class LrcScanner {
+  private final String lyric;
+  private final int length;
+  // skips the word tag search of plain LRC
+  private final boolean hasWordTag;
+  private int pos = 0;
+
+  // current line
+  private int fieldEnd;
+  private int textStart;
+  private int textEnd;
+  private int tagPos;
+
+  // current time tag
+  private int time;
+  // word positions and times of the current text
+  private int[] words;
+
+  LrcScanner(String lyric) {
+    this.lyric = lyric == null ? "" : lyric;
+    this.length = this.lyric.length();
+    this.hasWordTag = this.lyric.indexOf('<') >= 0;
+  }
+
+  /**
+   * move to the next line that has a time field and text
+   * @return false if no line left
+   */
+  boolean nextLine() {
+    while (pos < length) {
+      int start = pos;
+      int end = start;
+      while (end < length) {
+        char c = lyric.charAt(end);
+        if (c == '\n' || c == '\r') break;
+        end++;
+      }
+      pos = end;
+      if (pos < length) {
+        if (lyric.charAt(pos) == '\r' && pos + 1 < length && lyric.charAt(pos + 1) == '\n') pos += 2;
+        else pos++;
+      }
+
+      // String.trim
+      while (start < end && lyric.charAt(start) <= ' ') start++;
+      while (end > start && lyric.charAt(end - 1) <= ' ') end--;
+
+      int fieldEnd = start;
+      while (fieldEnd < end && lyric.charAt(fieldEnd) == '[') {
+        int i = fieldEnd + 1;
+        while (i < end && isTimeFieldChar(lyric.charAt(i))) i++;
+        if (i == fieldEnd + 1 || i >= end || lyric.charAt(i) != ']') break;
+        fieldEnd = i + 1;
+      }
+      if (fieldEnd == start) continue;
+
+      int textStart = fieldEnd;
+      while (textStart < end && lyric.charAt(textStart) <= ' ') textStart++;
+      if (textStart == end) continue;
+
+      this.fieldEnd = fieldEnd;
+      this.textStart = textStart;
+      this.textEnd = end;
+      this.tagPos = start;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * move to the next time tag of the current line
+   * @return false if the time field has no tag left
+   */
+  boolean nextTime() {
+    while (tagPos < fieldEnd) {
+      int end = matchTime(tagPos, fieldEnd);
+      if (end < 0) {
+        tagPos++;
+        continue;
+      }
+      tagPos = end;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * try to match a time tag at index, fills time
+   * @return end index of the tag or -1
+   */
+  private int matchTime(int index, int limit) {
+    int p = index;
+    int run = digitRun(p, limit);
+    if (run < 1 || run > 3) return -1;
+    int c0 = parseDigits(p, run);
+    int c1 = 0;
+    int c2 = 0;
+    p += run;
+
+    int parts = 1;
+    while (parts < 3 && p < limit && lyric.charAt(p) == ':') {
+      run = digitRun(p + 1, limit);
+      if (run < 1 || run > 3) break;
+      if (parts == 1) c1 = parseDigits(p + 1, run);
+      else c2 = parseDigits(p + 1, run);
+      parts++;
+      p += run + 1;
+    }
+
+    if (p >= limit || lyric.charAt(p) != '.') return -1;
+    run = digitRun(p + 1, limit);
+    if (run < 1) return -1;
+    if (run > 3) run = 3;
+    int fraction = parseDigits(p + 1, run);
+    p += run + 1;
+
+    int hours;
+    int minutes;
+    int seconds;
+    switch (parts) {
+      case 3:
+        hours = c0;
+        minutes = c1;
+        seconds = c2;
+        break;
+      case 2:
+        hours = 0;
+        minutes = c0;
+        seconds = c1;
+        break;
+      default:
+        hours = 0;
+        minutes = 0;
+        seconds = c0;
+        break;
+    }
+    time = hours * 60 * 60 * 1000
+      + minutes * 60 * 1000
+      + seconds * 1000
+      + fraction;
+    return p;
+  }
+
+  private int digitRun(int index, int limit) {
+    int i = index;
+    while (i < limit && isDigit(lyric.charAt(i))) i++;
+    return i - index;
+  }
+
+  private int parseDigits(int index, int count) {
+    int value = 0;
+    for (int i = index, end = index + count; i < end; i++) value = value * 10 + (lyric.charAt(i) - '0');
+    return value;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isTimeFieldChar(char c) {
+    return isDigit(c) || c == ':' || c == '.';
+  }
+
+  /**
+   * time of the current tag in milliseconds
+   */
+  int getTime() {
+    return time;
+  }
+
+  /**
+   * text of the current line without the word tags
+   */
+  String getText() {
+    words = null;
+    if (hasWordTag) {
+      for (int i = textStart; i < textEnd; i++) {
+        if (lyric.charAt(i) == '<') return parseWords(i);
+      }
+    }
+    return lyric.substring(textStart, textEnd);
+  }
+
+  private String parseWords(int tagStart) {
+    StringBuilder text = new StringBuilder(textEnd - textStart);
+    int[] words = new int[8];
+    int size = 0;
+    int start = textStart;
+    for (int i = tagStart; i < textEnd; i++) {
+      if (lyric.charAt(i) != '<') continue;
+      int end = matchTime(i + 1, textEnd);
+      if (end < 0 || end >= textEnd || lyric.charAt(end) != '>') continue;
+      text.append(lyric, start, i);
+      if (size == words.length) words = Arrays.copyOf(words, size * 2);
+      words[size++] = text.length();
+      words[size++] = time;
+      start = end + 1;
+      i = end;
+    }
+    if (size == 0) return lyric.substring(textStart, textEnd);
+    text.append(lyric, start, textEnd);
+    this.words = Arrays.copyOf(words, size);
+    return text.toString();
+  }
+
+  /**
+   * word tags of the last getText, pairs of the text position and the time
+   * @return null if the text has no word tag
+   */
+  int[] getWords() {
+    return words;
+  }
+}
@@ -1,74 +1,154 @@
 package cn.toside.music.mobile.lyric;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.util.Log;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Objects;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import cn.toside.music.mobile.utils.ScreenStateReceiver;
 
 public class Lyric extends LyricPlayer {
-  LyricView lyricView = null;
+  // also read by the throttled sink flush outside the lock
+  volatile LyricView lyricView = null;
   LyricEvent lyricEvent = null;
   ReactApplicationContext reactAppContext;
 
   boolean isRunPlayer = false;
   // String lastText = "LX Music ^-^";
   int lastLine = 0;
-  List lines = new ArrayList();
-  boolean isShowTranslation;
-  boolean isShowRoma;
+  static final String TRACK_TRANSLATION = "translation";
+  static final String TRACK_ROMA = "roma";
+  // names of the extended lyrics, the extended lyric i is the track i + 1 of the timeline
+  ArrayList<String> trackNames = getDefaultTrackNames();
+  ArrayList<String> extendedLyricTexts = new ArrayList<>();
+  final HashSet<String> visibleTracks = new HashSet<>();
+  // visible tracks of the timeline
+  int extendedLyricMask = 1 << LyricTimeline.TRACK_MAIN;
   boolean isShowLyricView = false;
   boolean isSendLyricTextEvent = false;
+  // send the timeline once and only the line index on line change
+  boolean isSendLyricIndexEvent = false;
+  // send the next lines with their due time in one event, 0 to disable
+  int lookaheadLineCount = 0;
+  // last line of the sent batch, the timer wakes up there to send the next one
+  int batchEndLine = -1;
+  private boolean isBatchUpdating = false;
+  // while the screen is off, the lines due within this window after a line are sent with it in one batch
+  // and share its wakeup, in ms
+  int screenOffWakeupWindow = 2000;
   boolean isScreenOff = false;
   String lyricText = "";
-  String translationText = "";
-  String romaLyricText = "";
 
-  Lyric(ReactApplicationContext reactContext, boolean isShowTranslation, boolean isShowRoma, float playbackRate) {
+  // overlay
+  final LyricSink viewSink = new LyricSink(timeSource) {
+    @Override
+    public void onTimeline(LyricTimeline timeline) {
+      LyricView lyricView = Lyric.this.lyricView;
+      if (lyricView == null) return;
+      lyricView.prepareLyrics(timeline, -1, extendedLyricMask);
+    }
+
+    @Override
+    public void onLine(LyricTimeline timeline, int lineNum, int extendedLyricMask) {
+      LyricView lyricView = Lyric.this.lyricView;
+      if (lyricView == null) return;
+      lyricView.postLyric(getText(timeline, lineNum), getExtendedLyrics(timeline, lineNum, extendedLyricMask),
+        isValidLine(timeline, lineNum) ? lineNum : -1);
+      lyricView.prepareLyrics(timeline, lineNum, extendedLyricMask);
+    }
+  };
+  // lyric-line-play and lyric-line-index events, the lookahead batch is sent by the player itself
+  final LyricSink eventSink = new LyricSink(timeSource) {
+    @Override
+    public void onTimeline(LyricTimeline timeline) {
+      if (isSendLyricIndexEvent) sendTimeline(timeline);
+    }
+
+    @Override
+    public void onLine(LyricTimeline timeline, int lineNum, int extendedLyricMask) {
+      WritableMap params = Arguments.createMap();
+      if (isSendLyricIndexEvent) {
+        boolean isValidLine = isValidLine(timeline, lineNum);
+        params.putInt("index", isValidLine ? lineNum : -1);
+        params.putInt("time", isValidLine ? timeline.getTime(lineNum) : 0);
+        lyricEvent.sendEvent(lyricEvent.LYRIC_LINE_INDEX, params);
+      } else {
+        params.putString("text", getText(timeline, lineNum));
+        params.putArray("extendedLyrics", Arguments.makeNativeArray(getExtendedLyrics(timeline, lineNum, extendedLyricMask)));
+        lyricEvent.sendEvent(lyricEvent.LYRIC_Line_PLAY, params);
+      }
+    }
+  };
+  private final CopyOnWriteArrayList<LyricSink> sinks = new CopyOnWriteArrayList<>();
+
+  Lyric(ReactApplicationContext reactContext, Set<String> visibleTracks, float playbackRate) {
     this.reactAppContext = reactContext;
-    this.isShowTranslation = isShowTranslation;
-    this.isShowRoma = isShowRoma;
-    this.playbackRate = playbackRate;
-    registerScreenBroadcastReceiver();
+    this.visibleTracks.addAll(visibleTracks);
+    updateExtendedLyricMask();
+    setPlaybackRate(playbackRate);
+    this.lyricCache = LyricCache.getInstance(reactContext);
+    viewSink.setEnabled(false);
+    eventSink.setEnabled(false);
+    addSink(viewSink);
+    addSink(eventSink);
+    ScreenStateReceiver.getInstance(reactContext).addListener(isScreenOn -> {
+      if (isScreenOn) {
+        Log.d("Lyric", "ACTION_SCREEN_ON");
+        handleScreenOn();
+      } else {
+        Log.d("Lyric", "ACTION_SCREEN_OFF");
+        handleScreenOff();
+      }
+    });
     // checkA2DPConnection(reactContext);
   }
 
-  private void registerScreenBroadcastReceiver() {
-    final IntentFilter theFilter = new IntentFilter();
-    /** System Defined Broadcast */
-    theFilter.addAction(Intent.ACTION_SCREEN_ON);
-    theFilter.addAction(Intent.ACTION_SCREEN_OFF);
-
-    BroadcastReceiver screenOnOffReceiver = new BroadcastReceiver() {
-      @Override
-      public void onReceive(Context context, Intent intent) {
-        String strAction = intent.getAction();
-
-        switch (Objects.requireNonNull(strAction)) {
-          case Intent.ACTION_SCREEN_OFF:
-            Log.d("Lyric", "ACTION_SCREEN_OFF");
-            handleScreenOff();
-            break;
-          case Intent.ACTION_SCREEN_ON:
-            Log.d("Lyric", "ACTION_SCREEN_ON");
-            handleScreenOn();
-            break;
-        }
-      }
-    };
+  /**
+   * a sink besides the overlay and the events gets every line, the lookahead batch and the screen off
+   * coalescing skip the wakeups between the lines so they are off while it is added
+   */
+  public synchronized void addSink(LyricSink sink) {
+    boolean isBatchMode = isLyricBatchMode();
+    boolean isCoalesceMode = isCoalesceMode();
+    if (!sinks.addIfAbsent(sink)) return;
+    handleSinkChange(isBatchMode, isCoalesceMode);
+  }
+
+  public synchronized void removeSink(LyricSink sink) {
+    boolean isBatchMode = isLyricBatchMode();
+    boolean isCoalesceMode = isCoalesceMode();
+    if (!sinks.remove(sink)) return;
+    handleSinkChange(isBatchMode, isCoalesceMode);
+  }
 
-    reactAppContext.registerReceiver(screenOnOffReceiver, theFilter);
+  private void handleSinkChange(boolean isBatchMode, boolean isCoalesceMode) {
+    if (!isRunPlayer || (isBatchMode == isLyricBatchMode() && isCoalesceMode == isCoalesceMode())) return;
+    batchEndLine = -1;
+    // the line may be behind after the skipped wakeups
+    int lineNum = curLineNum;
+    reschedule();
+    if (curLineNum == lineNum) handleGetCurrentLyric(lastLine);
+  }
+
+  private boolean hasExternalSink() {
+    for (LyricSink sink : sinks) {
+      if (sink != viewSink && sink != eventSink) return true;
+    }
+    return false;
+  }
+
+  private void updateSinkState() {
+    viewSink.setEnabled(isShowLyricView && !isScreenOff);
+    eventSink.setEnabled(isSendLyricTextEvent);
   }
 
   // private void checkA2DPConnection(Context context) {
@@ -106,20 +186,38 @@ public class Lyric extends LyricPlayer {
   private boolean isDisableAutoPause() {
     return !isRunPlayer || isSendLyricTextEvent;
   }
-  private void handleScreenOff() {
+  private synchronized void handleScreenOff() {
+    boolean isBatchMode = isLyricBatchMode();
     isScreenOff = true;
-    if (isDisableAutoPause()) return;
+    updateSinkState();
+    if (lyricView != null) lyricView.setPaused(true);
+    scheduler.stats.setScreenOff(true);
+    if (isDisableAutoPause()) {
+      if (!isBatchMode && isLyricBatchMode()) handleGetCurrentLyric(lastLine);
+      return;
+    }
     setTempPause(true);
   }
 
-  private void handleScreenOn() {
+  private synchronized void handleScreenOn() {
+    boolean isBatchMode = isLyricBatchMode();
+    boolean isCoalesceMode = isCoalesceMode();
     isScreenOff = false;
-    if (isDisableAutoPause()) return;
-    if (lyricView == null) lyricView = new LyricView(reactAppContext, lyricEvent);
-    lyricView.runOnUiThread(() -> {
-      handleGetCurrentLyric(lastLine);
-      setTempPause(false);
-    });
+    updateSinkState();
+    if (lyricView != null) lyricView.setPaused(false);
+    scheduler.stats.setScreenOff(false);
+    if (isDisableAutoPause()) {
+      if ((isBatchMode && !isLyricBatchMode()) || isCoalesceMode) {
+        // the line may be behind after the skipped wakeups
+        int lineNum = curLineNum;
+        reschedule();
+        if (curLineNum == lineNum) handleGetCurrentLyric(lastLine);
+      }
+      return;
+    }
+    if (lyricView == null) lyricView = new LyricView(reactAppContext, lyricEvent, this);
+    handleGetCurrentLyric(lastLine);
+    setTempPause(false);
   }
 
   private void pausePlayer() {
@@ -128,45 +226,140 @@ public class Lyric extends LyricPlayer {
     this.pause();
   }
 
-  private void setCurrentLyric(String lyric, ArrayList<String> extendedLyrics) {
-    if (isShowLyricView && !isScreenOff && lyricView != null) {
-      lyricView.setLyric(lyric, extendedLyrics);
+  private void handleGetCurrentLyric(int lineNum) {
+    lastLine = lineNum;
+    if (isLyricBatchMode()) {
+      // the overlay is disabled and no other sink is added in the batch mode
+      sendLyricBatch(lineNum, false);
+      return;
     }
-    if (isSendLyricTextEvent) {
-      WritableMap params = Arguments.createMap();
-      params.putString("text", lyric);
-      params.putArray("extendedLyrics", Arguments.makeNativeArray(extendedLyrics));
-      lyricEvent.sendEvent(lyricEvent.LYRIC_Line_PLAY, params);
+    for (LyricSink sink : sinks) sink.dispatch(timeline, lineNum, extendedLyricMask);
+  }
+
+  /**
+   * the lyric view is not visible and the events are the only consumer, so the lines can be sent ahead of time
+   */
+  private boolean isLyricBatchMode() {
+    return lookaheadLineCount > 0 && isSendLyricTextEvent && (!isShowLyricView || isScreenOff) && !hasExternalSink();
+  }
+
+  private boolean isCoalesceMode() {
+    return screenOffWakeupWindow > 0 && isScreenOff && isSendLyricTextEvent && !isLyricBatchMode() && !hasExternalSink();
+  }
+
+  public synchronized void setScreenOffWakeupWindow(int window) {
+    screenOffWakeupWindow = Math.max(window, 0);
+  }
+
+  private WritableMap createBatchLine(int lineNum, long time) {
+    WritableMap line = Arguments.createMap();
+    line.putInt("index", lineNum);
+    line.putDouble("time", time);
+    if (!isSendLyricIndexEvent) {
+      boolean isValidLine = lineNum >= 0 && lineNum < timeline.size();
+      line.putString("text", isValidLine ? timeline.getText(lineNum) : "");
+      line.putArray("extendedLyrics", Arguments.makeNativeArray(isValidLine
+        ? timeline.getExtendedLyrics(lineNum, extendedLyricMask)
+        : new ArrayList<String>(0)));
     }
+    return line;
   }
-  private void handleGetCurrentLyric(int lineNum) {
-    lastLine = lineNum;
-    if (lineNum >= 0 && lineNum < lines.size()) {
-      HashMap line = (HashMap) lines.get(lineNum);
-      if (line != null) {
-        setCurrentLyric((String) line.get("text"), (ArrayList<String>) line.get("extendedLyrics"));
-        return;
+
+  /**
+   * send the line and the following lines with their due time in epoch ms
+   * @param isContinue the batch continues the previous one, its first line was already played
+   */
+  private void sendLyricBatch(int lineNum, boolean isContinue) {
+    boolean isValidLine = lineNum >= 0 && lineNum < timeline.size();
+    batchEndLine = isValidLine && isPlay ? Math.min(lineNum + lookaheadLineCount, timeline.size()) - 1 : -1;
+    sendLyricBatch(lineNum, batchEndLine, isContinue);
+  }
+
+  /**
+   * @param endLine last line of the batch, -1 to send only lineNum as due now
+   */
+  private void sendLyricBatch(int lineNum, int endLine, boolean isContinue) {
+    WritableArray lines = Arguments.createArray();
+    long now = System.currentTimeMillis();
+    if (lineNum < 0 || lineNum >= timeline.size()) {
+      lines.pushMap(createBatchLine(-1, now));
+    } else if (endLine >= lineNum) {
+      int currentTime = getCurrentTime();
+      float rate = clock.getRate();
+      for (int i = lineNum; i <= endLine; i++) {
+        lines.pushMap(createBatchLine(i, now + (long) ((timeline.getTime(i) - currentTime) / rate)));
       }
+    } else {
+      lines.pushMap(createBatchLine(lineNum, now));
     }
-    setCurrentLyric("", new ArrayList<>(0));
+    WritableMap params = Arguments.createMap();
+    params.putArray("lines", lines);
+    params.putBoolean("isContinue", isContinue);
+    lyricEvent.sendEvent(lyricEvent.LYRIC_LINE_BATCH, params);
   }
 
-  public void setSendLyricTextEvent(boolean isSend) {
+  public synchronized void setLookaheadLineCount(int count) {
+    if (count < 0) count = 0;
+    if (lookaheadLineCount == count) return;
+    lookaheadLineCount = count;
+    batchEndLine = -1;
+    if (!isRunPlayer) return;
+    handleGetCurrentLyric(lastLine);
+    reschedule();
+  }
+
+  private void sendTimeline(LyricTimeline timeline) {
+    WritableArray times = Arguments.createArray();
+    WritableArray texts = Arguments.createArray();
+    WritableArray extendedOffsets = Arguments.createArray();
+    WritableArray extendedTexts = Arguments.createArray();
+    WritableArray extendedTracks = Arguments.createArray();
+    for (int i = 0; i < timeline.size(); i++) {
+      times.pushInt(timeline.times[i]);
+      texts.pushString(timeline.texts[i]);
+    }
+    for (int offset : timeline.extendedOffsets) extendedOffsets.pushInt(offset);
+    for (int i = 0; i < timeline.extendedTexts.length; i++) {
+      extendedTexts.pushString(timeline.extendedTexts[i]);
+      extendedTracks.pushInt(timeline.extendedTracks[i]);
+    }
+    WritableMap params = Arguments.createMap();
+    params.putArray("times", times);
+    params.putArray("texts", texts);
+    params.putArray("extendedOffsets", extendedOffsets);
+    params.putArray("extendedTexts", extendedTexts);
+    params.putArray("extendedTracks", extendedTracks);
+    params.putArray("trackNames", Arguments.makeNativeArray(trackNames));
+    lyricEvent.sendEvent(lyricEvent.LYRIC_TIMELINE, params);
+  }
+
+  public synchronized void setSendLyricTextEvent(boolean isSend) {
     if (isSendLyricTextEvent == isSend) return;
     isSendLyricTextEvent = isSend;
     if (isSend) {
       if (lyricEvent == null) lyricEvent = new LyricEvent(reactAppContext);
       isRunPlayer = true;
+      if (isSendLyricIndexEvent) sendTimeline(timeline);
     } else {
       pausePlayer();
     }
+    updateSinkState();
+  }
+
+  public synchronized void setSendLyricIndexEvent(boolean isSend) {
+    if (isSendLyricIndexEvent == isSend) return;
+    isSendLyricIndexEvent = isSend;
+    if (lyricEvent == null) lyricEvent = new LyricEvent(reactAppContext);
+    if (!isSendLyricTextEvent) return;
+    if (isSend) sendTimeline(timeline);
+    handleGetCurrentLyric(lastLine);
   }
 
-  public void showDesktopLyric(Bundle options, Promise promise) {
+  public synchronized void showDesktopLyric(Bundle options, Promise promise) {
     if (isShowLyricView) return;
     if (lyricEvent == null) lyricEvent = new LyricEvent(reactAppContext);
     isShowLyricView = true;
-    if (lyricView == null) lyricView = new LyricView(reactAppContext, lyricEvent);
+    if (lyricView == null) lyricView = new LyricView(reactAppContext, lyricEvent, this);
     try {
       lyricView.showLyricView(options);
     } catch (Exception e) {
@@ -175,12 +368,14 @@ public class Lyric extends LyricPlayer {
       return;
     }
     isRunPlayer = true;
+    updateSinkState();
     promise.resolve(null);
   }
 
-  public void hideDesktopLyric() {
+  public synchronized void hideDesktopLyric() {
     if (!isShowLyricView) return;
     isShowLyricView = false;
+    updateSinkState();
     pausePlayer();
     if (lyricView != null) {
       lyricView.destroy();
@@ -188,100 +383,250 @@ public class Lyric extends LyricPlayer {
     }
   }
 
+  private static ArrayList<String> getDefaultTrackNames() {
+    ArrayList<String> trackNames = new ArrayList<>(2);
+    trackNames.add(TRACK_TRANSLATION);
+    trackNames.add(TRACK_ROMA);
+    return trackNames;
+  }
+
   private void refreshLyric() {
     if (!isRunPlayer) return;
-    ArrayList<String> extendedLyrics = new ArrayList<>(2);
-    if (isShowTranslation && !"".equals(translationText)) extendedLyrics.add(translationText);
-    if (isShowRoma && !"".equals(romaLyricText)) extendedLyrics.add(romaLyricText);
-    super.setLyric(lyricText, extendedLyrics);
+    // all the tracks are parsed, the toggles only change the visible ones
+    super.setLyric(lyricText, new ArrayList<>(extendedLyricTexts));
   }
 
-  public void setLyric(String lyric, String translation, String romaLyric) {
+  public synchronized void setLyric(String lyric, String translation, String romaLyric) {
     lyricText = lyric;
-    translationText = translation;
-    romaLyricText = romaLyric;
+    ArrayList<String> extendedLyricTexts = new ArrayList<>(2);
+    extendedLyricTexts.add(translation);
+    extendedLyricTexts.add(romaLyric);
+    this.extendedLyricTexts = extendedLyricTexts;
+    trackNames = getDefaultTrackNames();
+    updateExtendedLyricMask();
     refreshLyric();
   }
 
+  /**
+   * set the lyric of a named track, an unknown name adds a track
+   * only the given track is parsed
+   */
+  public synchronized void setExtendedLyric(String name, String extendedLyric) {
+    int index = trackNames.indexOf(name);
+    ArrayList<String> extendedLyricTexts = new ArrayList<>(this.extendedLyricTexts);
+    if (index < 0) {
+      if (trackNames.size() >= LyricTimeline.MAX_TRACK) return;
+      index = trackNames.size();
+      ArrayList<String> trackNames = new ArrayList<>(this.trackNames);
+      trackNames.add(name);
+      this.trackNames = trackNames;
+      extendedLyricTexts.add(extendedLyric);
+      updateExtendedLyricMask();
+    } else {
+      extendedLyricTexts.set(index, extendedLyric);
+    }
+    this.extendedLyricTexts = extendedLyricTexts;
+    if (isRunPlayer) super.setExtendedLyric(index, extendedLyric);
+  }
+
+  public void preloadLyric(String id, String lyric, String translation, String romaLyric) {
+    if (!isRunPlayer) return;
+    ArrayList<String> extendedLyrics = new ArrayList<>(2);
+    extendedLyrics.add(translation);
+    extendedLyrics.add(romaLyric);
+    preload(id, lyric, extendedLyrics);
+  }
+
+  @Override
+  public synchronized boolean activate(String id) {
+    if (!isRunPlayer) return false;
+    // the timeline of the new lyric is sent during the activation, with the default tracks
+    ArrayList<String> prevTrackNames = trackNames;
+    trackNames = getDefaultTrackNames();
+    updateExtendedLyricMask();
+    if (!super.activate(id)) {
+      trackNames = prevTrackNames;
+      updateExtendedLyricMask();
+      return false;
+    }
+    lyricText = lyric;
+    extendedLyricTexts = new ArrayList<>(extendedLyrics);
+    return true;
+  }
+
   @Override
-  public void onSetLyric(List lines) {
-    this.lines = lines;
+  public void onSetLyric(LyricTimeline timeline) {
+    for (LyricSink sink : sinks) {
+      if (sink.isEnabled()) sink.onTimeline(timeline);
+    }
     handleGetCurrentLyric(-1);
-    // for (int i = 0; i < lines.size(); i++) {
-    //   HashMap line = (HashMap) lines.get(i);
-    //   Log.d("Lyric", "onSetLyric: " +(String) line.get("text") + " " + line.get("extendedLyrics"));
+    // for (int i = 0; i < timeline.size(); i++) {
+    //   Log.d("Lyric", "onSetLyric: " + timeline.getText(i) + " " + timeline.getExtendedLyrics(i));
     // }
   }
 
+  @Override
+  public void onUpdateTimeline(LyricTimeline timeline) {
+    for (LyricSink sink : sinks) {
+      if (sink.isEnabled()) sink.onTimeline(timeline);
+    }
+    handleGetCurrentLyric(lastLine);
+  }
+
   @Override
   public void onPlay(int lineNum) {
+    if (isLyricBatchMode()) {
+      lastLine = lineNum;
+      if (isBatchUpdating || lineNum < batchEndLine) return;
+      sendLyricBatch(lineNum, true);
+      return;
+    }
+    if (isCoalesceMode()) {
+      // the lines sharing this wakeup are played by the receiver at their due time
+      int endLine = getCoalesceEndLine(lineNum);
+      if (endLine > lineNum) {
+        lastLine = lineNum;
+        sendLyricBatch(lineNum, endLine, false);
+        return;
+      }
+    }
     handleGetCurrentLyric(lineNum);
     // Log.d("Lyric", lineNum + " " + text + " " + (String) line.get("translation"));
   }
 
-  public void pauseLyric() {
-    pause();
+  @Override
+  int getNextWakeupLine(int lineNum) {
+    if (isLyricBatchMode()) {
+      // the batch sent for lineNum ends at lineNum + lookaheadLineCount - 1
+      return batchEndLine > lineNum ? batchEndLine : lineNum + lookaheadLineCount - 1;
+    }
+    if (!isCoalesceMode()) return lineNum + 1;
+    // the lines up to the end of the window were sent with lineNum
+    return getCoalesceEndLine(lineNum) + 1;
+  }
+
+  /**
+   * last line due within the wakeup window after lineNum
+   */
+  private int getCoalesceEndLine(int lineNum) {
+    if (lineNum < 0 || lineNum >= maxLine) return lineNum;
+    int[] times = timeline.times;
+    int windowEnd = times[lineNum] + (int) (screenOffWakeupWindow * clock.getRate());
+    int endLine = lineNum;
+    while (endLine < maxLine && times[endLine + 1] <= windowEnd) endLine++;
+    return endLine;
+  }
+
+  @Override
+  public synchronized void play(int curTime) {
+    // the lines are sent once after the restart
+    boolean isNested = isBatchUpdating;
+    isBatchUpdating = true;
+    batchEndLine = -1;
+    super.play(curTime);
+    isBatchUpdating = isNested;
+    if (isLyricBatchMode() && isBatchLineDue()) handleGetCurrentLyric(curLineNum);
+  }
+
+  /**
+   * the player moved while the batch was held back, a move onto the last line has already paused it there
+   */
+  private boolean isBatchLineDue() {
+    return isPlay || (curLineNum == maxLine && !isParsing && timeline.size() > 0);
+  }
+
+  @Override
+  public synchronized boolean syncPosition(int position, float rate, long timestampNanos) {
+    boolean isNested = isBatchUpdating;
+    int prevBatchEndLine = batchEndLine;
+    isBatchUpdating = true;
+    // the reschedule in super wakes up at the end of the batch sent below
+    batchEndLine = -1;
+    boolean isAdjusted = super.syncPosition(position, rate, timestampNanos);
+    isBatchUpdating = isNested;
+    if (isAdjusted && isLyricBatchMode() && isBatchLineDue()) {
+      // the due times moved
+      handleGetCurrentLyric(curLineNum);
+    } else if (batchEndLine == -1) {
+      batchEndLine = prevBatchEndLine;
+    }
+    return isAdjusted;
+  }
+
+  public synchronized void pauseLyric() {
+    // the line is cleared below, one event is enough
+    pause(false);
     if (!isRunPlayer) return;
     handleGetCurrentLyric(-1);
   }
 
-  public void lockLyric() {
+  public synchronized void lockLyric() {
     if (lyricView == null) return;
     lyricView.lockView();
   }
 
-  public void unlockLyric() {
+  public synchronized void unlockLyric() {
     if (lyricView == null) return;
     lyricView.unlockView();
   }
 
-  public void setMaxLineNum(int maxLineNum) {
+  public synchronized void setMaxLineNum(int maxLineNum) {
     if (lyricView == null) return;
     lyricView.setMaxLineNum(maxLineNum);
   }
 
-  public void setWidth(int width) {
+  public synchronized void setWidth(int width) {
     if (lyricView == null) return;
     lyricView.setWidth(width);
   }
 
-  public void setSingleLine(boolean singleLine) {
+  public synchronized void setSingleLine(boolean singleLine) {
     if (lyricView == null) return;
     lyricView.setSingleLine(singleLine);
   }
 
-  public void setShowToggleAnima(boolean showToggleAnima) {
+  public synchronized void setShowToggleAnima(boolean showToggleAnima) {
     if (lyricView == null) return;
     lyricView.setShowToggleAnima(showToggleAnima);
   }
 
-  public void toggleTranslation(boolean isShowTranslation) {
-    this.isShowTranslation = isShowTranslation;
-    refreshLyric();
+  private void updateExtendedLyricMask() {
+    int mask = 1 << LyricTimeline.TRACK_MAIN;
+    for (int i = 0; i < trackNames.size(); i++) {
+      if (visibleTracks.contains(trackNames.get(i))) mask |= 1 << (i + 1);
+    }
+    extendedLyricMask = mask;
   }
 
-  public void toggleRoma(boolean isShowRoma) {
-    this.isShowRoma = isShowRoma;
-    refreshLyric();
+  public synchronized void setTrackVisible(String name, boolean isVisible) {
+    if (isVisible) visibleTracks.add(name);
+    else visibleTracks.remove(name);
+    updateExtendedLyricMask();
+    if (isRunPlayer) handleGetCurrentLyric(lastLine);
   }
 
-  public void setPlayedColor(String unplayColor, String playedColor, String shadowColor) {
+  public synchronized void setPlayedColor(String unplayColor, String playedColor, String shadowColor) {
     if (lyricView == null) return;
     lyricView.setColor(unplayColor, playedColor, shadowColor);
   }
 
-  public void setAlpha(float alpha) {
+  public synchronized void setAlpha(float alpha) {
     if (lyricView == null) return;
     lyricView.setAlpha(alpha);
   }
 
-  public void setTextSize(float size) {
+  public synchronized void setTextSize(float size) {
     if (lyricView == null) return;
     lyricView.setTextSize(size);
   }
 
-  public void setLyricTextPosition(String positionX, String positionY) {
+  public synchronized void setLyricTextPosition(String positionX, String positionY) {
     if (lyricView == null) return;
     lyricView.setLyricTextPosition(positionX, positionY);
   }
+
+  public synchronized void updateStyle(Bundle options) {
+    if (lyricView == null) return;
+    lyricView.updateStyle(options);
+  }
 }
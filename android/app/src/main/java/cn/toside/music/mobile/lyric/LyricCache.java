@@ -0,0 +1,270 @@
+package cn.toside.music.mobile.lyric;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsed lyric cache, keyed by the hash of the lyric texts
+ * Keeps the recently used timelines in memory and a binary copy of them under the app cache dir
+ */
+public class LyricCache {
+  private static final String DIR_NAME = "lyric";
+  private static final String FILE_EXT = ".bin";
+  private static final int MAGIC = 0x4c584c54; // LXLT
+  private static final int VERSION = 4;
+  private static final int MAX_MEMORY_SIZE = 20;
+  private static final int MAX_DISK_SIZE = 200;
+
+  private static LyricCache instance = null;
+
+  private final File dir;
+  private final LinkedHashMap<String, LyricTimeline> memoryCache = new LinkedHashMap<String, LyricTimeline>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, LyricTimeline> eldest) {
+      return size() > MAX_MEMORY_SIZE;
+    }
+  };
+
+  private int memoryHitCount = 0;
+  private int diskHitCount = 0;
+  private int missCount = 0;
+
+  private LyricCache(Context context) {
+    dir = new File(context.getCacheDir(), DIR_NAME);
+  }
+
+  public static synchronized LyricCache getInstance(Context context) {
+    if (instance == null) instance = new LyricCache(context.getApplicationContext());
+    return instance;
+  }
+
+  public static String getKey(String lyric, List<String> extendedLyrics) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    digest.update((lyric == null ? "" : lyric).getBytes(StandardCharsets.UTF_8));
+    if (extendedLyrics != null) {
+      for (String extendedLyric : extendedLyrics) {
+        digest.update((byte) 0);
+        digest.update((extendedLyric == null ? "" : extendedLyric).getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    byte[] hash = digest.digest();
+    StringBuilder key = new StringBuilder(hash.length * 2);
+    for (byte b : hash) {
+      key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return key.toString();
+  }
+
+  public synchronized LyricTimeline get(String key) {
+    LyricTimeline timeline = memoryCache.get(key);
+    if (timeline != null) {
+      memoryHitCount++;
+      return timeline;
+    }
+    File file = new File(dir, key + FILE_EXT);
+    if (file.isFile()) {
+      timeline = readFile(file);
+      if (timeline != null) {
+        diskHitCount++;
+        file.setLastModified(System.currentTimeMillis());
+        memoryCache.put(key, timeline);
+        return timeline;
+      }
+    }
+    missCount++;
+    return null;
+  }
+
+  /**
+   * the file is written outside the lock, get() does not wait for the disk
+   */
+  public void put(String key, LyricTimeline timeline) {
+    synchronized (this) {
+      memoryCache.put(key, timeline);
+    }
+    if (!dir.isDirectory() && !dir.mkdirs()) return;
+    File file = new File(dir, key + FILE_EXT);
+    File tempFile = null;
+    try {
+      // unique, the same key may be written by two threads
+      tempFile = File.createTempFile(key, ".tmp", dir);
+      writeFile(tempFile, timeline);
+      if (!tempFile.renameTo(file)) tempFile.delete();
+    } catch (IOException e) {
+      if (tempFile != null) tempFile.delete();
+      Log.e("Lyric", "write lyric cache error: " + e.getMessage());
+      return;
+    }
+    trimDisk();
+  }
+
+  private void trimDisk() {
+    File[] files = dir.listFiles();
+    if (files == null || files.length <= MAX_DISK_SIZE) return;
+    long[] lastModified = new long[files.length];
+    for (int i = 0; i < files.length; i++) lastModified[i] = files[i].lastModified();
+    Arrays.sort(lastModified);
+    long threshold = lastModified[files.length - MAX_DISK_SIZE];
+    for (File file : files) {
+      if (file.lastModified() < threshold) file.delete();
+    }
+  }
+
+  /**
+   * size of the cache files in bytes
+   */
+  public synchronized long getSize() {
+    File[] files = dir.listFiles();
+    if (files == null) return 0;
+    long size = 0;
+    for (File file : files) size += file.length();
+    return size;
+  }
+
+  public synchronized void clear() {
+    memoryCache.clear();
+    File[] files = dir.listFiles();
+    if (files == null) return;
+    for (File file : files) file.delete();
+  }
+
+  public synchronized int getMemoryHitCount() {
+    return memoryHitCount;
+  }
+
+  public synchronized int getDiskHitCount() {
+    return diskHitCount;
+  }
+
+  public synchronized int getMissCount() {
+    return missCount;
+  }
+
+  private static void writeString(DataOutputStream out, String str) throws IOException {
+    byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * a stored length, the file can not hold more items than its bytes
+   */
+  private static int readLength(DataInputStream in, long limit) throws IOException {
+    return checkLength(in.readInt(), limit);
+  }
+
+  private static int checkLength(int length, long limit) throws IOException {
+    if (length < 0 || length > limit) throw new IOException("invalid length: " + length);
+    return length;
+  }
+
+  /**
+   * the indexes of the lines into another array, from 0 and never decreasing up to its length
+   */
+  private static void checkIndexes(int[] indexes, int length) throws IOException {
+    if (indexes[0] != 0 || indexes[indexes.length - 1] != length) throw new IOException("invalid indexes");
+    for (int i = 1; i < indexes.length; i++) {
+      if (indexes[i] < indexes[i - 1]) throw new IOException("invalid indexes");
+    }
+  }
+
+  private static String readString(DataInputStream in, long limit) throws IOException {
+    byte[] bytes = new byte[readLength(in, limit)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeFile(File file, LyricTimeline timeline) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(timeline.offset);
+      int size = timeline.times.length;
+      out.writeInt(size);
+      for (int time : timeline.times) out.writeInt(time);
+      for (String text : timeline.texts) writeString(out, text);
+      for (int offset : timeline.extendedOffsets) out.writeInt(offset);
+      for (String text : timeline.extendedTexts) writeString(out, text);
+      out.write(timeline.extendedTracks);
+      out.writeBoolean(timeline.wordIndexes != null);
+      if (timeline.wordIndexes == null) return;
+      for (int index : timeline.wordIndexes) out.writeInt(index);
+      for (int position : timeline.wordPositions) out.writeInt(position);
+      for (int time : timeline.wordTimes) out.writeInt(time);
+    }
+  }
+
+  private static LyricTimeline readFile(File file) {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("unknown format");
+      // a truncated or broken file must not make the arrays below huge
+      long limit = file.length();
+      int offset = in.readInt();
+      int size = readLength(in, limit);
+      int[] times = new int[size];
+      for (int i = 0; i < size; i++) {
+        times[i] = in.readInt();
+        if (i > 0 && times[i] < times[i - 1]) throw new IOException("invalid line time");
+      }
+      String[] texts = new String[size];
+      for (int i = 0; i < size; i++) texts[i] = readString(in, limit);
+      int[] extendedOffsets = new int[size + 1];
+      for (int i = 0; i <= size; i++) extendedOffsets[i] = in.readInt();
+      String[] extendedTexts = new String[checkLength(extendedOffsets[size], limit)];
+      checkIndexes(extendedOffsets, extendedTexts.length);
+      for (int i = 0; i < extendedTexts.length; i++) extendedTexts[i] = readString(in, limit);
+      byte[] extendedTracks = new byte[extendedTexts.length];
+      in.readFully(extendedTracks);
+      for (byte track : extendedTracks) {
+        if (track < LyricTimeline.TRACK_MAIN || track > LyricTimeline.MAX_TRACK) throw new IOException("invalid track: " + track);
+      }
+      int[] wordIndexes = null;
+      int[] wordPositions = null;
+      int[] wordTimes = null;
+      if (in.readBoolean()) {
+        wordIndexes = new int[size + 1];
+        for (int i = 0; i <= size; i++) wordIndexes[i] = in.readInt();
+        wordPositions = new int[checkLength(wordIndexes[size], limit)];
+        checkIndexes(wordIndexes, wordPositions.length);
+        for (int i = 0; i < size; i++) {
+          // the words of a line start in order inside its text
+          for (int word = wordIndexes[i], prevPosition = 0; word < wordIndexes[i + 1]; word++) {
+            int position = in.readInt();
+            if (position < prevPosition || position > texts[i].length()) throw new IOException("invalid word position");
+            wordPositions[word] = prevPosition = position;
+          }
+        }
+        wordTimes = new int[wordIndexes[size]];
+        for (int i = 0; i < wordTimes.length; i++) wordTimes[i] = in.readInt();
+      }
+      if (in.read() >= 0) throw new IOException("unexpected data at the end");
+      return new LyricTimeline(times, texts, extendedOffsets, extendedTexts, extendedTracks, offset,
+        wordIndexes, wordPositions, wordTimes);
+    } catch (Exception e) {
+      Log.e("Lyric", "read lyric cache error: " + e.getMessage());
+      file.delete();
+      return null;
+    }
+  }
+}
@@ -0,0 +1,519 @@
+package cn.toside.music.mobile.lyric;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.TypedValue;
+import android.view.Choreographer;
+import android.view.Gravity;
+import android.view.View;
+
+/**
+ * Desktop lyric drawn on one canvas
+ * Draws the current line and, while switching, the previous one, the layouts come from LyricLayoutCache
+ * so the next line is usually laid out before it is shown
+ * One animator runs all the switches, a long single line scrolls and the played part of the line is filled
+ * on the display frames, the fill reads the lyric player clock
+ */
+@SuppressLint("ViewConstructor")
+public class LyricCanvasView extends View {
+  private static final int ANIMA_DURATION = 300;
+  // scroll speed in px per second for each sp of text size
+  private static final float SCROLL_SPEED = 13.5F;
+  private static final int START_SCROLL_DELAY = 1500;
+  private static final float SHADOW_RADIUS = 1.6F;
+  private static final float SHADOW_DX = 1.5F;
+  private static final float SHADOW_DY = 1.3F;
+
+  private final TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+  // text size in sp as set, the paint holds it in px
+  private float textSizeSp = 0F;
+  private boolean isSingleLine;
+  private boolean isShowAnima;
+  private int maxLines = 1;
+  private int gravityVertical = Gravity.TOP;
+  private int gravityHorizontal = Gravity.START;
+  private int unplayColor = Color.WHITE;
+  private int playedColor = Color.WHITE;
+  private int shadowColor = Color.TRANSPARENT;
+  private int viewWidth = 0;
+  private LyricLayoutCache layoutCache = new LyricLayoutCache();
+  // between beginStyle and endStyle the style setters lay out the text once at the end
+  private boolean isBatchStyle = false;
+  private boolean isStyleChanged = false;
+  // text set between beginStyle and endStyle, laid out once with the new style
+  private String pendingText = null;
+  private int pendingLineNum = -1;
+  private int pendingLineLength = 0;
+
+  private LyricLayoutCache.LineLayout layout = null;
+  // the line moving out during the switch animation
+  private LyricLayoutCache.LineLayout prevLayout = null;
+  private final ValueAnimator animator = ValueAnimator.ofFloat(0F, 1F);
+  private float animaProgress = 1F;
+
+  // karaoke fill of the current line
+  private LyricPlayer player = null;
+  private int lineNum = -1;
+  // chars of the lyric line at the start of the text, the extended lyrics follow it
+  private int lineLength = 0;
+  // played chars
+  private float fillProgress = 0F;
+  private boolean isFilling = false;
+
+  // scroll of a single line wider than the view
+  private float scrollOffset = 0F;
+  private boolean isScrolling = false;
+  // screen off
+  private boolean isPaused = false;
+  private boolean isFrameScheduled = false;
+  private long lastFrameTime = 0;
+  private final Runnable startScrollRunnable = this::startScroll;
+  private final Choreographer.FrameCallback frameCallback = this::doFrame;
+
+  public LyricCanvasView(Context context, boolean isSingleLine, boolean isShowAnima) {
+    super(context);
+    this.isSingleLine = isSingleLine;
+    this.isShowAnima = isShowAnima;
+    animator.setDuration(ANIMA_DURATION);
+    animator.addUpdateListener(animation -> {
+      animaProgress = animation.getAnimatedFraction();
+      invalidate();
+    });
+    animator.addListener(new AnimatorListenerAdapter() {
+      @Override
+      public void onAnimationEnd(Animator animation) {
+        animaProgress = 1F;
+        prevLayout = null;
+        invalidate();
+      }
+    });
+    updateStyle();
+  }
+
+  public TextPaint getPaint() {
+    return paint;
+  }
+
+  public float getTextSize() {
+    return paint.getTextSize();
+  }
+
+  /**
+   * @param size in sp, the same as TextView
+   */
+  public void setTextSize(float size) {
+    textSizeSp = size;
+    paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, size, getResources().getDisplayMetrics()));
+    updateStyle();
+  }
+
+  public void setTextColor(int unplayColor, int playedColor) {
+    this.unplayColor = unplayColor;
+    this.playedColor = playedColor;
+    invalidate();
+  }
+
+  public void setShadowColor(int color) {
+    shadowColor = color;
+    invalidate();
+  }
+
+  public void setWidth(int width) {
+    if (viewWidth == width) return;
+    viewWidth = width;
+    updateStyle();
+  }
+
+  public void setSingleLine(boolean isSingleLine) {
+    if (this.isSingleLine == isSingleLine) return;
+    this.isSingleLine = isSingleLine;
+    updateStyle();
+  }
+
+  public void setMaxLines(int maxLines) {
+    if (this.maxLines == maxLines) return;
+    this.maxLines = maxLines;
+    updateStyle();
+  }
+
+  public void setGravity(int gravity) {
+    if ((gravity & Gravity.RELATIVE_HORIZONTAL_GRAVITY_MASK) == 0) gravity |= Gravity.START;
+    if ((gravity & Gravity.VERTICAL_GRAVITY_MASK) == 0) gravity |= Gravity.TOP;
+    gravityVertical = gravity & Gravity.VERTICAL_GRAVITY_MASK;
+    gravityHorizontal = gravity & Gravity.RELATIVE_HORIZONTAL_GRAVITY_MASK;
+    updateStyle();
+  }
+
+  public void setShowAnima(boolean isShowAnima) {
+    this.isShowAnima = isShowAnima;
+    if (!isShowAnima) animator.end();
+  }
+
+  public void setLayoutCache(LyricLayoutCache layoutCache) {
+    this.layoutCache = layoutCache;
+    updateStyle();
+  }
+
+  /**
+   * the lines are filled by the progress of the player
+   */
+  public void setPlayer(LyricPlayer player) {
+    this.player = player;
+    updateFill();
+    updateFrameCallback();
+  }
+
+  public void setPaused(boolean isPaused) {
+    this.isPaused = isPaused;
+    if (isPaused) animator.end();
+    else updateFill();
+    updateFrameCallback();
+  }
+
+  /**
+   * @param lineNum line of the lyric player, -1 for a text without progress
+   * @param lineLength chars of the lyric line at the start of text
+   */
+  public void setText(String text, int lineNum, int lineLength) {
+    if (isBatchStyle) {
+      pendingText = text;
+      pendingLineNum = lineNum;
+      pendingLineLength = lineLength;
+      return;
+    }
+    this.lineNum = lineNum;
+    this.lineLength = lineLength;
+    fillProgress = 0F;
+    updateFill();
+    if (layout != null && layout.text.equals(text)) {
+      // the same line again after a seek
+      updateFrameCallback();
+      invalidate();
+      return;
+    }
+    stopScroll();
+    animator.cancel();
+    LyricLayoutCache.LineLayout layout = layoutCache.obtain(text, paint);
+    if (isShowAnima && this.layout != null && !isPaused && isShown()) {
+      prevLayout = this.layout;
+      this.layout = layout;
+      animator.start();
+    } else {
+      this.layout = layout;
+    }
+    scrollOffset = 0F;
+    if (getMaxScrollOffset() > 0) postDelayed(startScrollRunnable, START_SCROLL_DELAY);
+    invalidate();
+  }
+
+  public void beginStyle() {
+    isBatchStyle = true;
+  }
+
+  public void endStyle() {
+    isBatchStyle = false;
+    String text = pendingText;
+    if (text == null) {
+      if (isStyleChanged) updateStyle();
+      return;
+    }
+    pendingText = null;
+    if (isStyleChanged) {
+      // the current layout is replaced, only the new text is laid out
+      isStyleChanged = false;
+      layoutCache.setStyle(paint, isSingleLine, getTextWidth(), maxLines, getAlignment());
+      animator.end();
+      stopScroll();
+      layout = null;
+    }
+    setText(text, pendingLineNum, pendingLineLength);
+  }
+
+  private Layout.Alignment getAlignment() {
+    switch (gravityHorizontal) {
+      case Gravity.CENTER_HORIZONTAL:
+        return Layout.Alignment.ALIGN_CENTER;
+      case Gravity.END:
+        return Layout.Alignment.ALIGN_OPPOSITE;
+      default:
+        return Layout.Alignment.ALIGN_NORMAL;
+    }
+  }
+
+  private int getTextWidth() {
+    return Math.max(viewWidth - getPaddingLeft() - getPaddingRight(), 0);
+  }
+
+  /**
+   * a style change lays out the lines again
+   */
+  private void updateStyle() {
+    if (isBatchStyle) {
+      isStyleChanged = true;
+      return;
+    }
+    isStyleChanged = false;
+    layoutCache.setStyle(paint, isSingleLine, getTextWidth(), maxLines, getAlignment());
+    animator.end();
+    if (layout != null) {
+      stopScroll();
+      layout = layoutCache.obtain(layout.text, paint);
+      scrollOffset = 0F;
+      if (getMaxScrollOffset() > 0) postDelayed(startScrollRunnable, START_SCROLL_DELAY);
+    }
+    invalidate();
+  }
+
+  @Override
+  protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+    super.onSizeChanged(w, h, oldw, oldh);
+    setWidth(w);
+  }
+
+  @Override
+  protected void onDetachedFromWindow() {
+    removeCallbacks(startScrollRunnable);
+    animator.cancel();
+    super.onDetachedFromWindow();
+    updateFrameCallback();
+  }
+
+  @Override
+  protected void onVisibilityChanged(View changedView, int visibility) {
+    super.onVisibilityChanged(changedView, visibility);
+    updateFrameCallback();
+  }
+
+  @Override
+  protected void onWindowVisibilityChanged(int visibility) {
+    super.onWindowVisibilityChanged(visibility);
+    updateFrameCallback();
+  }
+
+  @Override
+  protected void onDraw(Canvas canvas) {
+    if (layout == null) return;
+    boolean isFill = player != null && lineNum >= 0 && lineLength > 0 && fillProgress < lineLength;
+    if (prevLayout == null) {
+      drawLayout(canvas, layout, 0F, 1F, isFill);
+      return;
+    }
+    // the old line moves up and fades out, the new one comes from below
+    float height = paint.getTextSize();
+    drawLayout(canvas, prevLayout, -height * animaProgress, 1F - animaProgress, false);
+    drawLayout(canvas, layout, height * (1F - animaProgress), animaProgress, isFill);
+  }
+
+  /**
+   * @param isFill draw the unplayed part in unplayColor, the rest is in playedColor
+   */
+  private void drawLayout(Canvas canvas, LyricLayoutCache.LineLayout layout, float dy, float alpha, boolean isFill) {
+    StaticLayout staticLayout = layout.staticLayout;
+    if (staticLayout == null) {
+      float x = getDrawX(layout);
+      float y = getBaseline() + dy;
+      if (!isFill) {
+        applyColor(paint, playedColor, alpha);
+        canvas.drawText(layout.text, x, y, paint);
+        return;
+      }
+      float fillX = x + layout.getOffset(fillProgress);
+      drawTextClipped(canvas, layout.text, x, y, fillX, 0, getHeight(), alpha);
+      return;
+    }
+    float top;
+    switch (gravityVertical) {
+      case Gravity.CENTER_VERTICAL:
+        top = (getHeight() - staticLayout.getHeight()) / 2F;
+        break;
+      case Gravity.BOTTOM:
+        top = getHeight() - getPaddingBottom() - staticLayout.getHeight();
+        break;
+      default:
+        top = getPaddingTop();
+        break;
+    }
+    int saveCount = canvas.save();
+    canvas.translate(getPaddingLeft(), top + dy);
+    if (isFill) {
+      drawLayoutClipped(canvas, staticLayout, alpha);
+    } else {
+      applyColor(staticLayout.getPaint(), playedColor, alpha);
+      staticLayout.draw(canvas);
+    }
+    canvas.restoreToCount(saveCount);
+  }
+
+  private void drawTextClipped(Canvas canvas, String text, float x, float y, float fillX, float top, float bottom, float alpha) {
+    int saveCount = canvas.save();
+    canvas.clipRect(-getPaddingLeft(), top, fillX, bottom);
+    applyColor(paint, playedColor, alpha);
+    canvas.drawText(text, x, y, paint);
+    canvas.restoreToCount(saveCount);
+    saveCount = canvas.save();
+    canvas.clipRect(fillX, top, getWidth(), bottom);
+    applyColor(paint, unplayColor, alpha);
+    canvas.drawText(text, x, y, paint);
+    canvas.restoreToCount(saveCount);
+  }
+
+  /**
+   * each row is drawn twice, clipped at the fill, the layout only draws the rows inside the clip
+   */
+  private void drawLayoutClipped(Canvas canvas, StaticLayout staticLayout, float alpha) {
+    TextPaint paint = staticLayout.getPaint();
+    int lineCount = staticLayout.getLineCount();
+    for (int i = 0; i < lineCount; i++) {
+      float fillX = getFillX(staticLayout, i);
+      // the outer rows keep their shadow
+      float top = i == 0 ? -getHeight() : staticLayout.getLineTop(i);
+      float bottom = i == lineCount - 1 ? getHeight() * 2 : staticLayout.getLineBottom(i);
+      int saveCount = canvas.save();
+      canvas.clipRect(-getPaddingLeft(), top, fillX, bottom);
+      applyColor(paint, playedColor, alpha);
+      staticLayout.draw(canvas);
+      canvas.restoreToCount(saveCount);
+      saveCount = canvas.save();
+      canvas.clipRect(fillX, top, getWidth(), bottom);
+      applyColor(paint, unplayColor, alpha);
+      staticLayout.draw(canvas);
+      canvas.restoreToCount(saveCount);
+    }
+  }
+
+  /**
+   * x of the fill in a row of the layout, the extended lyric rows are filled in proportion to the lyric line
+   */
+  private float getFillX(StaticLayout staticLayout, int line) {
+    float left = staticLayout.getLineLeft(line);
+    float right = staticLayout.getLineRight(line);
+    int start = staticLayout.getLineStart(line);
+    if (start >= lineLength) return left + (right - left) * fillProgress / lineLength;
+    int end = Math.min(staticLayout.getLineEnd(line), lineLength);
+    if (fillProgress >= end) return right;
+    if (fillProgress <= start) return left;
+    int index = (int) fillProgress;
+    float x = staticLayout.getPrimaryHorizontal(index);
+    float nextX = index + 1 < end ? staticLayout.getPrimaryHorizontal(index + 1) : right;
+    return x + (nextX - x) * (fillProgress - index);
+  }
+
+  private void applyColor(TextPaint paint, int color, float alpha) {
+    paint.setColor(scaleAlpha(color, alpha));
+    paint.setShadowLayer(SHADOW_RADIUS, SHADOW_DX, SHADOW_DY, scaleAlpha(shadowColor, alpha));
+  }
+
+  private static int scaleAlpha(int color, float alpha) {
+    if (alpha >= 1F) return color;
+    return (color & 0x00ffffff) | ((int) (Color.alpha(color) * alpha) << 24);
+  }
+
+  private float getBaseline() {
+    Paint.FontMetrics fontMetrics = paint.getFontMetrics();
+    switch (gravityVertical) {
+      case Gravity.CENTER_VERTICAL:
+        return getHeight() / 2F + (fontMetrics.bottom - fontMetrics.top) / 2 - fontMetrics.bottom;
+      case Gravity.BOTTOM:
+        return getHeight() - getPaddingBottom() - fontMetrics.bottom;
+      default:
+        return getPaddingTop() - fontMetrics.ascent;
+    }
+  }
+
+  private float getDrawX(LyricLayoutCache.LineLayout layout) {
+    int textWidth = getTextWidth();
+    if (layout.width > textWidth) return getPaddingLeft() - (layout == this.layout ? scrollOffset : 0F);
+    switch (gravityHorizontal) {
+      case Gravity.CENTER_HORIZONTAL:
+        return getPaddingLeft() + (textWidth - layout.width) / 2;
+      case Gravity.END:
+        return getPaddingLeft() + textWidth - layout.width;
+      default:
+        return getPaddingLeft();
+    }
+  }
+
+  private float getMaxScrollOffset() {
+    if (layout == null || layout.staticLayout != null) return 0F;
+    return layout.width - getTextWidth() + 2;
+  }
+
+  private void startScroll() {
+    if (getMaxScrollOffset() <= 0) return;
+    isScrolling = true;
+    updateFrameCallback();
+  }
+
+  private void stopScroll() {
+    isScrolling = false;
+    removeCallbacks(startScrollRunnable);
+    updateFrameCallback();
+  }
+
+  /**
+   * read the played part of the line, it stops filling once the line is played or the player stops
+   */
+  private void updateFill() {
+    if (player == null || lineNum < 0 || lineLength == 0) {
+      isFilling = false;
+      return;
+    }
+    float progress = player.getLineProgress(lineNum);
+    if (progress != fillProgress) {
+      fillProgress = progress;
+      invalidate();
+    }
+    isFilling = progress < lineLength && player.isPlaying();
+  }
+
+  private void updateScroll(long frameTimeNanos) {
+    float speed = SCROLL_SPEED * textSizeSp;
+    if (layout.text.length() >= 20) speed += speed;
+    scrollOffset += speed * (frameTimeNanos - lastFrameTime) / 1000000000F;
+    float maxScrollOffset = getMaxScrollOffset();
+    if (scrollOffset >= maxScrollOffset) {
+      scrollOffset = maxScrollOffset;
+      isScrolling = false;
+    }
+    invalidate();
+  }
+
+  private void doFrame(long frameTimeNanos) {
+    isFrameScheduled = false;
+    if (isScrolling && lastFrameTime > 0) updateScroll(frameTimeNanos);
+    if (isFilling) updateFill();
+    if (!isRunFrame()) return;
+    lastFrameTime = frameTimeNanos;
+    isFrameScheduled = true;
+    Choreographer.getInstance().postFrameCallback(frameCallback);
+  }
+
+  private boolean isRunFrame() {
+    return (isScrolling || isFilling) && !isPaused && isShown() && getWindowVisibility() == VISIBLE;
+  }
+
+  /**
+   * run the frame callback only while the text scrolls or fills on a visible view
+   */
+  private void updateFrameCallback() {
+    boolean isRun = isRunFrame();
+    if (isRun == isFrameScheduled) return;
+    isFrameScheduled = isRun;
+    if (isRun) {
+      // starts moving on the next frame
+      lastFrameTime = 0;
+      Choreographer.getInstance().postFrameCallback(frameCallback);
+    } else {
+      Choreographer.getInstance().removeFrameCallback(frameCallback);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package cn.toside.music.mobile.lyric;
+
+import android.os.SystemClock;
+
+/**
+ * Lyric position clock
+ * The position is the anchor position plus the time elapsed since the anchor scaled by the rate,
+ * all kept in long nanoseconds, a rate change moves the anchor so earlier time keeps its old rate
+ */
+public class LyricClock {
+  interface TimeSource {
+    long nanoTime();
+  }
+
+  static final TimeSource SYSTEM_TIME_SOURCE = SystemClock::elapsedRealtimeNanos;
+
+  private final TimeSource timeSource;
+  private long anchorTime = 0;
+  private long anchorPosition = 0;
+  private float rate = 1;
+
+  LyricClock() {
+    this(SYSTEM_TIME_SOURCE);
+  }
+
+  LyricClock(TimeSource timeSource) {
+    this.timeSource = timeSource;
+  }
+
+  public long nanoTime() {
+    return timeSource.nanoTime();
+  }
+
+  long getPositionNanos(long now) {
+    return anchorPosition + (long) ((now - anchorTime) * (double) rate);
+  }
+
+  /**
+   * @return position in ms
+   */
+  public int getTime() {
+    return (int) (getPositionNanos(nanoTime()) / 1000000);
+  }
+
+  /**
+   * @param time position in ms
+   */
+  public void setTime(int time) {
+    anchorTime = nanoTime();
+    anchorPosition = time * 1000000L;
+  }
+
+  /**
+   * move the position without touching the anchor time
+   */
+  public void adjust(int time) {
+    anchorPosition += time * 1000000L;
+  }
+
+  public float getRate() {
+    return rate;
+  }
+
+  public void setRate(float rate) {
+    if (rate == this.rate) return;
+    long now = nanoTime();
+    anchorPosition = getPositionNanos(now);
+    anchorTime = now;
+    this.rate = rate;
+  }
+}
@@ -9,6 +9,9 @@ import com.facebook.react.modules.core.DeviceEventManagerModule;
 public class LyricEvent {
   final String SET_VIEW_POSITION = "set-position";
   final String LYRIC_Line_PLAY = "lyric-line-play";
+  final String LYRIC_TIMELINE = "lyric-timeline";
+  final String LYRIC_LINE_INDEX = "lyric-line-index";
+  final String LYRIC_LINE_BATCH = "lyric-line-batch";
 
   private final ReactApplicationContext reactContext;
   LyricEvent(ReactApplicationContext reactContext) { this.reactContext = reactContext; }
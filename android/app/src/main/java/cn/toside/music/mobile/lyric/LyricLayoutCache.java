@@ -0,0 +1,161 @@
+package cn.toside.music.mobile.lyric;
+
+import android.os.Build;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Overlay text layouts built off the ui thread
+ * The upcoming lines are laid out in the background, so a line switch only takes the ready result,
+ * the recently used texts are kept for the repeated lines such as the chorus
+ * A style change drops all the results
+ */
+public class LyricLayoutCache {
+  private static final int MAX_SIZE = 32;
+  private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  static final class LineLayout {
+    final String text;
+    // single line width
+    final float width;
+    // single line x of each char boundary for the karaoke fill, null with staticLayout
+    final float[] offsets;
+    // line breaks of the multi line view, null for the single line view
+    final StaticLayout staticLayout;
+
+    LineLayout(String text, float width, float[] offsets, StaticLayout staticLayout) {
+      this.text = text;
+      this.width = width;
+      this.offsets = offsets;
+      this.staticLayout = staticLayout;
+    }
+
+    /**
+     * single line x at the played chars
+     */
+    float getOffset(float progress) {
+      int index = (int) progress;
+      if (index >= offsets.length - 1) return width;
+      if (index < 0) return 0;
+      return offsets[index] + (offsets[index + 1] - offsets[index]) * (progress - index);
+    }
+  }
+
+  private static final class Style {
+    // only read after the copy, the ui thread measures with its own paint
+    final TextPaint paint;
+    final boolean isSingleLine;
+    final int width;
+    final int maxLines;
+    final Layout.Alignment alignment;
+
+    Style(TextPaint paint, boolean isSingleLine, int width, int maxLines, Layout.Alignment alignment) {
+      this.paint = new TextPaint(paint);
+      this.isSingleLine = isSingleLine;
+      this.width = width;
+      this.maxLines = maxLines;
+      this.alignment = alignment;
+    }
+  }
+
+  private final LinkedHashMap<String, LineLayout> layouts = new LinkedHashMap<String, LineLayout>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, LineLayout> eldest) {
+      return size() > MAX_SIZE;
+    }
+  };
+  private Style style = null;
+  private int version = 0;
+
+  /**
+   * @param width text width of the multi line view, the layouts wait for it while it is 0
+   */
+  public synchronized void setStyle(TextPaint paint, boolean isSingleLine, int width, int maxLines, Layout.Alignment alignment) {
+    style = new Style(paint, isSingleLine, width, maxLines, alignment);
+    version++;
+    layouts.clear();
+  }
+
+  public synchronized LineLayout get(String text) {
+    return layouts.get(text);
+  }
+
+  /**
+   * the prepared layout of the text, or a new one built with paint on the calling thread
+   */
+  public LineLayout obtain(String text, TextPaint paint) {
+    Style style;
+    int version;
+    synchronized (this) {
+      LineLayout layout = layouts.get(text);
+      if (layout != null) return layout;
+      style = this.style;
+      version = this.version;
+    }
+    LineLayout layout = createLayout(text, paint, style);
+    synchronized (this) {
+      if (version == this.version) layouts.put(text, layout);
+    }
+    return layout;
+  }
+
+  /**
+   * lay out the texts in the background
+   */
+  public void prepare(List<String> texts) {
+    final Style style;
+    final int version;
+    synchronized (this) {
+      if (this.style == null) return;
+      style = this.style;
+      version = this.version;
+    }
+    executor.execute(() -> {
+      for (String text : texts) {
+        synchronized (this) {
+          if (version != this.version) return;
+          if (layouts.containsKey(text)) continue;
+        }
+        LineLayout layout = createLayout(text, style.paint, style);
+        synchronized (this) {
+          if (version != this.version) return;
+          layouts.put(text, layout);
+        }
+      }
+    });
+  }
+
+  private static LineLayout createLayout(String text, TextPaint paint, Style style) {
+    float width = paint.measureText(text);
+    if (style != null && !style.isSingleLine && style.width > 0) {
+      // each layout draws with its own paint, the view sets the colors on it
+      return new LineLayout(text, width, null, createStaticLayout(text, new TextPaint(paint), style));
+    }
+    float[] widths = new float[text.length()];
+    paint.getTextWidths(text, widths);
+    float[] offsets = new float[widths.length + 1];
+    for (int i = 0; i < widths.length; i++) offsets[i + 1] = offsets[i] + widths[i];
+    return new LineLayout(text, width, offsets, null);
+  }
+
+  @SuppressWarnings("deprecation")
+  private static StaticLayout createStaticLayout(String text, TextPaint paint, Style style) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+      return StaticLayout.Builder.obtain(text, 0, text.length(), paint, style.width)
+        .setAlignment(style.alignment)
+        .setMaxLines(style.maxLines)
+        .setEllipsize(TextUtils.TruncateAt.END)
+        .build();
+    }
+    // no max lines, the view clips the rest
+    return new StaticLayout(text, paint, style.width, style.alignment, 1, 0, true);
+  }
+}
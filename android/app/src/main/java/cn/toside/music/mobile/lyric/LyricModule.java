@@ -4,7 +4,6 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Build;
 import android.provider.Settings;
-import android.util.Log;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
@@ -12,14 +11,17 @@ import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.HashSet;
 
 public class LyricModule extends ReactContextBaseJavaModule {
   private final ReactApplicationContext reactContext;
   Lyric lyric;
   // final Map<String, Object> constants = new HashMap<>();
 
-  boolean isShowTranslation = false;
-  boolean isShowRoma = false;
+  // names of the visible extended lyric tracks
+  final HashSet<String> visibleTracks = new HashSet<>();
   float playbackRate = 1;
 
   private int listenerCount = 0;
@@ -67,7 +69,7 @@ public class LyricModule extends ReactContextBaseJavaModule {
 
   @ReactMethod
   public void showDesktopLyric(ReadableMap data, Promise promise) {
-    if (lyric == null) lyric = new Lyric(reactContext, isShowTranslation, isShowRoma, playbackRate);
+    if (lyric == null) lyric = new Lyric(reactContext, visibleTracks, playbackRate);
     lyric.showDesktopLyric(Arguments.toBundle(data), promise);
   }
 
@@ -79,12 +81,40 @@ public class LyricModule extends ReactContextBaseJavaModule {
 
   @ReactMethod
   public void setSendLyricTextEvent(boolean isSend, Promise promise) {
-    if (lyric == null) lyric = new Lyric(reactContext, isShowTranslation, isShowRoma, playbackRate);
+    if (lyric == null) lyric = new Lyric(reactContext, visibleTracks, playbackRate);
     lyric.setSendLyricTextEvent(isSend);
     promise.resolve(null);
   }
 
 
+  @ReactMethod
+  public void setLyricEventThrottle(int throttle, Promise promise) {
+    if (lyric == null) lyric = new Lyric(reactContext, visibleTracks, playbackRate);
+    lyric.eventSink.setThrottle(throttle);
+    promise.resolve(null);
+  }
+
+  @ReactMethod
+  public void setSendLyricIndexEvent(boolean isSend, Promise promise) {
+    if (lyric == null) lyric = new Lyric(reactContext, visibleTracks, playbackRate);
+    lyric.setSendLyricIndexEvent(isSend);
+    promise.resolve(null);
+  }
+
+  @ReactMethod
+  public void setLyricLookahead(int count, Promise promise) {
+    if (lyric == null) lyric = new Lyric(reactContext, visibleTracks, playbackRate);
+    lyric.setLookaheadLineCount(count);
+    promise.resolve(null);
+  }
+
+  @ReactMethod
+  public void setScreenOffWakeupWindow(int window, Promise promise) {
+    if (lyric == null) lyric = new Lyric(reactContext, visibleTracks, playbackRate);
+    lyric.setScreenOffWakeupWindow(window);
+    promise.resolve(null);
+  }
+
   @ReactMethod
   public void setLyric(String lyric, String translation, String romaLyric, Promise promise) {
     // Log.d("Lyric", "set lyric: " + lyric);
@@ -93,6 +123,23 @@ public class LyricModule extends ReactContextBaseJavaModule {
     promise.resolve(null);
   }
 
+  @ReactMethod
+  public void setExtendedLyric(String name, String extendedLyric, Promise promise) {
+    if (lyric != null) lyric.setExtendedLyric(name, extendedLyric);
+    promise.resolve(null);
+  }
+
+  @ReactMethod
+  public void preloadLyric(String trackId, String lyric, String translation, String romaLyric, Promise promise) {
+    if (this.lyric != null) this.lyric.preloadLyric(trackId, lyric, translation, romaLyric);
+    promise.resolve(null);
+  }
+
+  @ReactMethod
+  public void activate(String trackId, Promise promise) {
+    promise.resolve(lyric != null && lyric.activate(trackId));
+  }
+
   @ReactMethod
   public void setPlaybackRate(float playbackRate, Promise promise) {
     this.playbackRate = playbackRate;
@@ -102,28 +149,35 @@ public class LyricModule extends ReactContextBaseJavaModule {
 
   @ReactMethod
   public void toggleTranslation(boolean isShowTranslation, Promise promise) {
-    this.isShowTranslation = isShowTranslation;
-    if (lyric != null) lyric.toggleTranslation(isShowTranslation);
-    promise.resolve(null);
+    setTrackVisible(Lyric.TRACK_TRANSLATION, isShowTranslation, promise);
   }
 
   @ReactMethod
   public void toggleRoma(boolean isShowRoma, Promise promise) {
-    this.isShowRoma = isShowRoma;
-    if (lyric != null) lyric.toggleRoma(isShowRoma);
+    setTrackVisible(Lyric.TRACK_ROMA, isShowRoma, promise);
+  }
+
+  @ReactMethod
+  public void setTrackVisible(String name, boolean isVisible, Promise promise) {
+    if (isVisible) visibleTracks.add(name);
+    else visibleTracks.remove(name);
+    if (lyric != null) lyric.setTrackVisible(name, isVisible);
     promise.resolve(null);
   }
 
   @ReactMethod
   public void play(int time, Promise promise) {
-    Log.d("Lyric", "play lyric: " + time);
-    if (lyric != null) lyric.play(time);
+    if (lyric != null) lyric.requestPlay(time);
     promise.resolve(null);
   }
 
+  @ReactMethod
+  public void syncPosition(double position, double rate, double timestampNanos) {
+    if (lyric != null) lyric.syncPosition((int) position, (float) rate, (long) timestampNanos);
+  }
+
   @ReactMethod
   public void pause(Promise promise) {
-    Log.d("Lyric", "play pause");
     if (lyric != null) lyric.pauseLyric();
     promise.resolve(null);
   }
@@ -188,6 +242,46 @@ public class LyricModule extends ReactContextBaseJavaModule {
     promise.resolve(null);
   }
 
+  /**
+   * set several style options at once, the keys are the same as showDesktopLyric
+   */
+  @ReactMethod
+  public void updateStyle(ReadableMap style, Promise promise) {
+    if (lyric != null) lyric.updateStyle(Arguments.toBundle(style));
+    promise.resolve(null);
+  }
+
+  @ReactMethod
+  public void getTimingStats(Promise promise) {
+    if (lyric == null) {
+      promise.resolve(null);
+      return;
+    }
+    LyricTimingStats timingStats = lyric.scheduler.stats;
+    WritableMap stats = Arguments.createMap();
+    stats.putInt("driftP50", timingStats.getDrift(50));
+    stats.putInt("driftP95", timingStats.getDrift(95));
+    stats.putInt("driftP99", timingStats.getDrift(99));
+    stats.putInt("skips", timingStats.getSkipCount());
+    stats.putInt("wakeups", timingStats.getWakeupCount());
+    stats.putDouble("wakeupsPerMinute", timingStats.getWakeupsPerMinute());
+    stats.putInt("screenOffWakeups", timingStats.getScreenOffWakeupCount());
+    stats.putDouble("screenOffWakeupsPerMinute", timingStats.getScreenOffWakeupsPerMinute());
+    stats.putInt("coalescedLines", timingStats.getCoalescedLineCount());
+    promise.resolve(stats);
+  }
+
+  @ReactMethod
+  public void getLyricCacheStats(Promise promise) {
+    LyricCache lyricCache = LyricCache.getInstance(reactContext);
+    WritableMap stats = Arguments.createMap();
+    stats.putInt("memoryHits", lyricCache.getMemoryHitCount());
+    stats.putInt("diskHits", lyricCache.getDiskHitCount());
+    stats.putInt("misses", lyricCache.getMissCount());
+    stats.putDouble("size", lyricCache.getSize());
+    promise.resolve(stats);
+  }
+
   @ReactMethod
   public void checkOverlayPermission(Promise promise) {
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && !Settings.canDrawOverlays(reactContext)) {
@@ -1,40 +1,115 @@
 package cn.toside.music.mobile.lyric;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class LyricPlayer {
-  final String timeFieldExp = "^(?:\\[[\\d:.]+])+";
-  final String timeExp = "\\d{1,3}(:\\d{1,3}){0,2}(?:\\.\\d{1,3})";
 //  HashMap tagRegMap;
-  Pattern timeFieldPattern;
-  Pattern timePattern;
 
   String lyric = "";
   ArrayList<String> extendedLyrics = new ArrayList<>();
-  List<HashMap> lines = new ArrayList<>();
-  HashMap tags = new HashMap();
+  LyricTimeline timeline = LyricTimeline.EMPTY;
   boolean isPlay = false;
-  float playbackRate = 1;
   int curLineNum = 0;
   int maxLine = 0;
   int offset = 150;
-  int performanceTime = 0;
-  int startPlayTime = 0;
+  final LyricClock.TimeSource timeSource;
+  final LyricClock clock;
   // int delay = 0;
-  Object tid = null;
+  final LyricScheduler scheduler;
   boolean tempPause = false;
   boolean tempPaused = false;
+  // line the pending timeout was scheduled for
+  private int wakeupLine = 0;
+
+  LyricCache lyricCache = null;
+  private static final ExecutorService parseExecutor = Executors.newSingleThreadExecutor();
+  private Future<?> parseTask = null;
+  private int parseVersion = 0;
+  // tracks of the extended lyrics changed since the current timeline, merged by the parse task
+  private int changedTrackMask = 0;
+  boolean isParsing = false;
+  // play request received while parsing
+  private boolean isPendingPlay = false;
+  private final LyricClock pendingClock;
+  // play requests within a frame are merged, only the last one is applied
+  private static final int SEEK_MERGE_TIME = 16;
+  private boolean isPendingSeek = false;
+  private final LyricClock seekClock;
+  private final Runnable seekRunnable = this::applySeek;
+  // lyric time at the last pause, keeps the word progress still
+  private int pausedTime = 0;
+  // read by the overlay every frame without the lock
+  private volatile PlayState playState = PlayState.STOPPED;
+  // lyrics of the upcoming tracks, parsed in the background
+  private static final int MAX_PRELOAD_SIZE = 2;
+  private final LinkedHashMap<String, PreloadedLyric> preloadedLyrics = new LinkedHashMap<String, PreloadedLyric>() {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, PreloadedLyric> eldest) {
+      if (size() <= MAX_PRELOAD_SIZE) return false;
+      eldest.getValue().task.cancel(true);
+      return true;
+    }
+  };
+
+  /**
+   * play state published for the readers outside the lock, replaced on every change
+   */
+  private static final class PlayState {
+    static final PlayState STOPPED = new PlayState(LyricTimeline.EMPTY, false, 0, 0, 1);
+
+    final LyricTimeline timeline;
+    final boolean isPlay;
+    final long anchorTime;
+    // lyric position at anchorTime, in ns
+    final long anchorPosition;
+    final float rate;
+
+    PlayState(LyricTimeline timeline, boolean isPlay, long anchorTime, long anchorPosition, float rate) {
+      this.timeline = timeline;
+      this.isPlay = isPlay;
+      this.anchorTime = anchorTime;
+      this.anchorPosition = anchorPosition;
+      this.rate = rate;
+    }
+
+    int getTime(long now) {
+      if (!isPlay) return (int) (anchorPosition / 1000000);
+      return (int) ((anchorPosition + (long) ((now - anchorTime) * (double) rate)) / 1000000);
+    }
+  }
+
+  private static final class PreloadedLyric {
+    final String lyric;
+    final ArrayList<String> extendedLyrics;
+    volatile LyricTimeline timeline = null;
+    Future<?> task = null;
+
+    PreloadedLyric(String lyric, ArrayList<String> extendedLyrics) {
+      this.lyric = lyric;
+      this.extendedLyrics = extendedLyrics;
+    }
+  }
+  // position sync, in ms
+  private static final int SYNC_DEAD_BAND = 20;
+  private static final int SYNC_MAX_SLEW = 100;
+  private static final int SYNC_RESET_THRESHOLD = 500;
 
   LyricPlayer() {
+    this(LyricClock.SYSTEM_TIME_SOURCE);
+  }
+
+  LyricPlayer(LyricClock.TimeSource timeSource) {
+    this.timeSource = timeSource;
+    clock = new LyricClock(timeSource);
+    scheduler = new LyricScheduler(this::handleTimeout, timeSource);
+    pendingClock = new LyricClock(timeSource);
+    seekClock = new LyricClock(timeSource);
 //    tagRegMap = new HashMap<String, String>();
 //    tagRegMap.put("title", "ti");
 //    tagRegMap.put("artist", "ar");
@@ -42,12 +117,9 @@ public class LyricPlayer {
 //    tagRegMap.put("offset", "offset");
 //    tagRegMap.put("by", "by");
 //    tags = new HashMap();
-
-    timeFieldPattern = Pattern.compile(timeFieldExp);
-    timePattern = Pattern.compile(timeExp);
   }
 
-  public void setTempPause(boolean isPaused) {
+  public synchronized void setTempPause(boolean isPaused) {
     if (isPaused) {
       tempPause = true;
     } else {
@@ -69,181 +141,93 @@ public class LyricPlayer {
 //    });
 //  }
 
-  private void startTimeout(Runnable runnable, long delay) {
-    if (tid != null) Utils.clearTimeout(tid);
-    tid = Utils.setTimeout(runnable, delay);
+  private void startTimeout(long delay) {
+    scheduler.schedule(delay);
   }
 
   private void stopTimeout() {
-    if (tid == null) return;
-    Utils.clearTimeout(tid);
-    tid = null;
+    scheduler.cancel();
   }
 
-  private int getNow() {
-    return (int)(System.nanoTime() / 1000000);
-  }
-
-  private int getCurrentTime() {
-    return (int)((getNow() - this.performanceTime) * this.playbackRate) + startPlayTime;
-  }
-
-  private void initTag() {
-    tags = new HashMap();
-    Matcher matcher = Pattern.compile("\\[(ti|ar|al|offset|by):\\s*(\\S+(?:\\s+\\S+)*)\\s*]").matcher(this.lyric);
-    while (matcher.find()) {
-      String key = matcher.group(1);
-      if (key == null) continue;
-      String val = matcher.group(2);
-      if (val == null) val = "";
-      tags.put(key, val);
+  private synchronized void handleTimeout() {
+    if (tempPause) {
+      tempPaused = true;
+      return;
     }
-
-    String offsetStr = (String) tags.get("offset");
-    if (offsetStr == null || offsetStr.equals("")) {
-      tags.put("offset", 0);
-    } else {
-      int offset;
-      try {
-        offset = Integer.parseInt(offsetStr);
-      } catch (Exception err) {
-        offset = 0;
-      }
-      tags.put("offset", offset);
+    if (!isPlay) return;
+    // the lines before the wakeup line are skipped on purpose
+    if (wakeupLine > curLineNum + 1) {
+      scheduler.stats.recordCoalesced(wakeupLine - curLineNum - 1);
+      curLineNum = wakeupLine - 1;
     }
+    refresh();
   }
 
+  int getCurrentTime() {
+    return clock.getTime();
+  }
 
-  final String t_rxp_1 = "^0+(\\d+)";
-  final String t_rxp_2 = ":0+(\\d+)";
-  final String t_rxp_3 = "\\.0+(\\d+)";
-  private String formatTimeLabel(String label) {
-    return label.replaceAll(t_rxp_1, "$1")
-      .replaceAll(t_rxp_2, ":$1")
-      .replaceAll(t_rxp_3, ".$1");
-  }
-
-  private void parseExtendedLyric(HashMap linesMap, String extendedLyric) {
-    String[] extendedLyricLines = extendedLyric.split("\r\n|\n|\r");
-    for (String translationLine : extendedLyricLines) {
-      String line = translationLine.trim();
-      Matcher timeFieldResult = timeFieldPattern.matcher(line);
-      if (timeFieldResult.find()) {
-        String timeField = timeFieldResult.group();
-        String text = line.replaceAll(timeFieldExp, "").trim();
-        if (text.length() > 0) {
-          Matcher timeMatchResult = timePattern.matcher(timeField);
-          while (timeMatchResult.find()) {
-            String timeStr = timeMatchResult.group();
-            timeStr = formatTimeLabel(timeStr);
-            HashMap targetLine = (HashMap) linesMap.get(timeStr);
-            if (targetLine != null) ((ArrayList<String>) targetLine.get("extendedLyrics")).add(text);
-          }
-        }
-      }
-    }
+  private void init() {
+    if (lyric == null) lyric = "";
+    if (extendedLyrics == null) extendedLyrics = new ArrayList<>();
+    if (parseTask != null) parseTask.cancel(true);
+    final int version = ++parseVersion;
+    changedTrackMask = 0;
+    final String lyric = this.lyric;
+    final ArrayList<String> extendedLyrics = this.extendedLyrics;
+    final LyricCache lyricCache = this.lyricCache;
+    isParsing = true;
+    parseTask = parseExecutor.submit(() -> {
+      LyricTimeline timeline = parseLyric(lyricCache, lyric, extendedLyrics);
+      if (Thread.currentThread().isInterrupted()) return;
+      scheduler.post(() -> handleParsed(version, timeline));
+    });
   }
 
-  private void initLines() {
-    String[] linesStr = lyric.split("\r\n|\n|\r");
-    lines = new ArrayList<>();
-
-    HashMap linesMap = new HashMap<String, HashMap>();
-    HashMap timeMap = new HashMap<String, Integer>();
-
-    for (String lineStr : linesStr) {
-      String line = lineStr.trim();
-      Matcher timeFieldResult = timeFieldPattern.matcher(line);
-      if (timeFieldResult.find()) {
-        String timeField = timeFieldResult.group();
-        String text = line.replaceAll(timeFieldExp, "").trim();
-        if (text.length() > 0) {
-          Matcher timeMatchResult = timePattern.matcher(timeField);
-          while (timeMatchResult.find()) {
-            String timeStr = formatTimeLabel(timeMatchResult.group());
-            if (linesMap.containsKey(timeStr)) {
-              ((ArrayList<String>) ((HashMap) linesMap.get(timeStr)).get("extendedLyrics")).add(text);
-              continue;
-            }
-            String[] timeArr = timeStr.split(":");
-            String hours;
-            String minutes;
-            String seconds;
-            String milliseconds = "0";
-            switch (timeArr.length) {
-              case 3:
-                hours = timeArr[0];
-                minutes = timeArr[1];
-                seconds = timeArr[2];
-                break;
-              case 2:
-                hours = "0";
-                minutes = timeArr[0];
-                seconds = timeArr[1];
-                break;
-              case 1:
-                hours = "0";
-                minutes = "0";
-                seconds = timeArr[0];
-                break;
-              default:
-                continue;
-            }
-            if (seconds.contains(".")) {
-              timeArr = seconds.split("\\.");
-              seconds = timeArr[0];
-              if (timeArr.length > 1) milliseconds = timeArr[1];
-            }
-            HashMap<String, Object> lineInfo = new HashMap<>();
-            int time = Integer.parseInt(hours) * 60 * 60 * 1000
-              + Integer.parseInt(minutes) * 60 * 1000
-              + Integer.parseInt(seconds) * 1000
-              + Integer.parseInt(milliseconds);
-            lineInfo.put("time", time);
-            lineInfo.put("text", text);
-            lineInfo.put("extendedLyrics", new ArrayList<String>(extendedLyrics.size()));
-            timeMap.put(timeStr, time);
-            linesMap.put(timeStr, lineInfo);
-          }
-        }
-      }
+  private static LyricTimeline parseLyric(LyricCache lyricCache, String lyric, List<String> extendedLyrics) {
+    if (lyricCache == null) return LyricTimeline.parse(lyric, extendedLyrics);
+    String key = LyricCache.getKey(lyric, extendedLyrics);
+    LyricTimeline timeline = lyricCache.get(key);
+    if (timeline == null) {
+      timeline = LyricTimeline.parse(lyric, extendedLyrics);
+      lyricCache.put(key, timeline);
     }
+    return timeline;
+  }
 
-    for (String extendedLyric : extendedLyrics) {
-      parseExtendedLyric(linesMap, extendedLyric);
-    }
+  private void setTimeline(LyricTimeline timeline) {
+    this.timeline = timeline;
+    this.maxLine = timeline.size() - 1;
+    publishPlayState();
+    onSetLyric(timeline);
+  }
 
-    Set<Entry<String, Integer>> set = timeMap.entrySet();
-    List<Entry<String, Integer>> list = new ArrayList<Entry<String, Integer>>(set);
-    Collections.sort(list, new Comparator<Entry<String, Integer>>() {
-      public int compare(Map.Entry<String, Integer> o1,
-                         Map.Entry<String, Integer> o2) {
-        return o1.getValue().compareTo(o2.getValue());
-      }
-    });
+  private synchronized void handleParsed(int version, LyricTimeline timeline) {
+    // superseded by a newer setLyric
+    if (version != parseVersion) return;
+    parseTask = null;
+    isParsing = false;
+    setTimeline(timeline);
 
-    // lines = new ArrayList<HashMap>(list.size());
-    for (Entry<String, Integer> entry : list) {
-      lines.add((HashMap) linesMap.get(entry.getKey()));
+    if (isPendingPlay) {
+      isPendingPlay = false;
+      play(pendingClock.getTime());
     }
-
-    this.maxLine = lines.size() - 1;
   }
 
-  private void  init() {
-    if (lyric == null) lyric = "";
-    if (extendedLyrics == null) extendedLyrics = new ArrayList<>();
-    initTag();
-    initLines();
-    onSetLyric(lines);
+  public synchronized void pause() {
+    pause(true);
   }
 
-  public void pause() {
+  /**
+   * @param isUpdateLine emit the line at the pause position
+   */
+  synchronized void pause(boolean isUpdateLine) {
+    isPendingPlay = false;
+    cancelSeek();
     if (!isPlay) return;
-    isPlay = false;
-    tempPaused = false;
-    stopTimeout();
-    if (curLineNum == maxLine) return;
+    stopPlay();
+    if (!isUpdateLine || curLineNum == maxLine) return;
     int curLineNum = this.findCurLineNum(getCurrentTime());
     if (this.curLineNum != curLineNum) {
       this.curLineNum = curLineNum;
@@ -251,29 +235,96 @@ public class LyricPlayer {
     }
   }
 
-  public void play(int curTime) {
-    if (this.lines.size() == 0) return;
-    pause();
+  private void stopPlay() {
+    pausedTime = getCurrentTime();
+    isPlay = false;
+    tempPaused = false;
+    stopTimeout();
+    scheduler.stats.stop();
+    publishPlayState();
+  }
+
+  private void publishPlayState() {
+    long now = clock.nanoTime();
+    playState = new PlayState(timeline, isPlay, now,
+      isPlay ? clock.getPositionNanos(now) : pausedTime * 1000000L, clock.getRate());
+  }
+
+  /**
+   * seek from the progress bar, the requests within one frame are applied once
+   */
+  public synchronized void requestPlay(int curTime) {
+    seekClock.setTime(curTime);
+    if (isPendingSeek) return;
+    isPendingSeek = true;
+    scheduler.postDelayed(seekRunnable, SEEK_MERGE_TIME);
+  }
+
+  private synchronized void applySeek() {
+    if (!isPendingSeek) return;
+    isPendingSeek = false;
+    play(seekClock.getTime());
+  }
+
+  private void cancelSeek() {
+    if (!isPendingSeek) return;
+    isPendingSeek = false;
+    scheduler.removeCallbacks(seekRunnable);
+  }
+
+  public synchronized void play(int curTime) {
+    if (isParsing) {
+      // apply it once the new lyric is ready
+      isPendingPlay = true;
+      pendingClock.setTime(curTime);
+      return;
+    }
+    if (timeline.size() == 0) return;
+    // restart without emitting the line at the old position
+    if (isPlay) stopPlay();
     isPlay = true;
+    scheduler.stats.start();
 
-    Object tagOffset = tags.get("offset");
-    if (tagOffset == null) tagOffset = 0;
-    performanceTime = getNow() - (int) tagOffset - offset;
-    startPlayTime = curTime;
+    clock.setTime(curTime + getOffsetTime());
 
     curLineNum = findCurLineNum(getCurrentTime()) - 1;
 
     refresh();
   }
 
+  /**
+   * the lyric offsets are in real time, scaled by the rate they become lyric time
+   */
+  private int getOffsetTime() {
+    return (int)((timeline.offset + offset) * clock.getRate());
+  }
+
   private int findCurLineNum(int curTime, int startIndex) {
     // Log.d("Lyric", "findCurLineNum: " + startIndex);
     if (curTime <= 0) return 0;
-    int length = lines.size();
-    for (int index = startIndex; index < length; index++) {
-      if (curTime < (int) ((HashMap)lines.get(index)).get("time")) return index == 0 ? 0 : index - 1;
+    int[] times = timeline.times;
+    int length = times.length;
+    if (startIndex >= length) return length - 1;
+
+    // most lookups land on the current or the next line
+    int index = Math.max(curLineNum + 1, startIndex);
+    for (int end = Math.min(index + 2, length); index < end; index++) {
+      if (curTime < times[index]) {
+        if (index > startIndex && curTime < times[index - 1]) break;
+        return index == 0 ? 0 : index - 1;
+      }
+    }
+
+    // find the first line after curTime
+    int low = startIndex;
+    int high = length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (curTime < times[mid]) high = mid;
+      else low = mid + 1;
     }
-    return length - 1;
+    if (low == length) return length - 1;
+    return low == 0 ? 0 : low - 1;
   }
 
   private int findCurLineNum(int curTime) {
@@ -295,29 +346,21 @@ public class LyricPlayer {
       handleMaxLine();
       return;
     }
-    HashMap curLine = lines.get(curLineNum);
+    int curLineTime = timeline.times[curLineNum];
 
     int currentTime = getCurrentTime();
-    int driftTime = currentTime - (int)curLine.get("time");
-    // Log.d("Lyric", "driftTime: " + driftTime + "  time: " + curLine.get("time") + "  currentTime: " + currentTime);
+    int driftTime = currentTime - curLineTime;
+    // Log.d("Lyric", "driftTime: " + driftTime + "  time: " + curLineTime + "  currentTime: " + currentTime);
 
     if (driftTime >= 0 || curLineNum == 0) {
-      HashMap nextLine = lines.get(curLineNum + 1);
-      int delay = (int)(((int)nextLine.get("time") - (int)curLine.get("time") - driftTime) / this.playbackRate);
+      int delay = (int)((timeline.times[curLineNum + 1] - curLineTime - driftTime) / clock.getRate());
       // Log.d("Lyric", "delay: " + delay + "  driftTime: " + driftTime);
       if (delay > 0) {
-        if (isPlay) {
-          startTimeout(() -> {
-            if (tempPause) {
-              tempPaused = true;
-              return;
-            }
-            if (!isPlay) return;
-            refresh();
-          }, delay);
-        }
+        if (isPlay) scheduleWakeup(currentTime);
+        publishPlayState();
         onPlay(curLineNum);
       } else {
+        scheduler.stats.recordSkip();
         int newCurLineNum = this.findCurLineNum(currentTime, curLineNum + 1);
         if (newCurLineNum > curLineNum) curLineNum = newCurLineNum - 1;
         // Log.d("Lyric", "refresh--: " + curLineNum + "  newCurLineNum: " + newCurLineNum);
@@ -330,22 +373,207 @@ public class LyricPlayer {
     refresh();
   }
 
-  public void setLyric(String lyric, ArrayList<String> extendedLyrics) {
+  private void scheduleWakeup(int currentTime) {
+    wakeupLine = Math.min(Math.max(getNextWakeupLine(curLineNum), curLineNum + 1), maxLine);
+    int delay = (int)((timeline.times[wakeupLine] - currentTime) / clock.getRate());
+    startTimeout(Math.max(delay, 0));
+  }
+
+  /**
+   * Follow the position reported by the player
+   * Small errors are slewed out over several syncs instead of restarting the lyric
+   * @param position player position in ms
+   * @param rate player playback rate
+   * @param timestampNanos SystemClock.elapsedRealtimeNanos() of the position, 0 for now
+   * @return whether the lyric time was adjusted without a restart
+   */
+  public synchronized boolean syncPosition(int position, float rate, long timestampNanos) {
+    if (timestampNanos > 0) {
+      long age = (clock.nanoTime() - timestampNanos) / 1000000;
+      if (age > 0) position += (int)(age * rate);
+    }
+    boolean isRateChanged = rate != clock.getRate();
+    clock.setRate(rate);
+    pendingClock.setRate(rate);
+    seekClock.setRate(rate);
+    // the position may predate the seek
+    if (isPendingSeek) return false;
+    if (isPendingPlay) {
+      pendingClock.setTime(position);
+      return false;
+    }
+    if (!isPlay || timeline.size() == 0) return false;
+
+    int error = position + getOffsetTime() - getCurrentTime();
+    if (Math.abs(error) > SYNC_RESET_THRESHOLD) {
+      play(position);
+      return false;
+    }
+    if (Math.abs(error) >= SYNC_DEAD_BAND) {
+      int slew = error / 2;
+      if (slew > SYNC_MAX_SLEW) slew = SYNC_MAX_SLEW;
+      else if (slew < -SYNC_MAX_SLEW) slew = -SYNC_MAX_SLEW;
+      clock.adjust(slew);
+    } else if (!isRateChanged) return false;
+    publishPlayState();
+    reschedule();
+    return true;
+  }
+
+  /**
+   * recompute the next timeout after the clock moved
+   */
+  void reschedule() {
+    if (!isPlay || tempPaused || curLineNum >= maxLine) return;
+    int currentTime = getCurrentTime();
+    int lineNum = findCurLineNum(currentTime);
+    if (lineNum == curLineNum) {
+      scheduleWakeup(currentTime);
+    } else {
+      curLineNum = lineNum - 1;
+      refresh();
+    }
+  }
+
+  public synchronized void setLyric(String lyric, ArrayList<String> extendedLyrics) {
+    // a seek or a play of the previous lyric must not apply to the new one
+    cancelSeek();
+    isPendingPlay = false;
     if (isPlay) pause();
     this.lyric = lyric;
     this.extendedLyrics = extendedLyrics;
     init();
   }
 
-  public void setPlaybackRate(float playbackRate) {
-    this.playbackRate = playbackRate;
-    if (this.lines.size() == 0) return;
-    if (!this.isPlay) return;
-    this.play(this.getCurrentTime());
+  /**
+   * set the lyric of one extended track, the main lyric and the other tracks are not parsed again
+   * @param index index in extendedLyrics, extendedLyrics.size() adds a track
+   */
+  public synchronized void setExtendedLyric(int index, String extendedLyric) {
+    if (index < 0 || index > extendedLyrics.size() || index >= LyricTimeline.MAX_TRACK) return;
+    if (extendedLyric == null) extendedLyric = "";
+    // the parse task may still read the old list
+    final ArrayList<String> extendedLyrics = new ArrayList<>(this.extendedLyrics);
+    if (index == extendedLyrics.size()) extendedLyrics.add(extendedLyric);
+    else extendedLyrics.set(index, extendedLyric);
+    this.extendedLyrics = extendedLyrics;
+    if (isParsing) {
+      init();
+      return;
+    }
+    // a newer change supersedes the running task, so the task merges all the tracks changed since the timeline
+    changedTrackMask |= 1 << index;
+    if (parseTask != null) parseTask.cancel(true);
+    final int version = ++parseVersion;
+    final int trackMask = changedTrackMask;
+    final LyricTimeline baseTimeline = this.timeline;
+    final String lyric = this.lyric;
+    final LyricCache lyricCache = this.lyricCache;
+    parseTask = parseExecutor.submit(() -> {
+      LyricTimeline timeline = baseTimeline;
+      for (int i = 0; i < extendedLyrics.size(); i++) {
+        if ((trackMask & (1 << i)) != 0) timeline = timeline.withTrack(i + 1, extendedLyrics.get(i));
+      }
+      if (Thread.currentThread().isInterrupted()) return;
+      if (lyricCache != null) lyricCache.put(LyricCache.getKey(lyric, extendedLyrics), timeline);
+      final LyricTimeline result = timeline;
+      scheduler.post(() -> handleTrackParsed(version, result));
+    });
+  }
+
+  private synchronized void handleTrackParsed(int version, LyricTimeline timeline) {
+    if (version != parseVersion) return;
+    parseTask = null;
+    changedTrackMask = 0;
+    // same lines, the position is kept
+    this.timeline = timeline;
+    publishPlayState();
+    onUpdateTimeline(timeline);
+  }
+
+  /**
+   * parse the lyric of an upcoming track, activate(id) switches to it
+   */
+  public synchronized void preload(String id, String lyric, ArrayList<String> extendedLyrics) {
+    final PreloadedLyric preloadedLyric = new PreloadedLyric(lyric == null ? "" : lyric,
+      extendedLyrics == null ? new ArrayList<>() : extendedLyrics);
+    final LyricCache lyricCache = this.lyricCache;
+    preloadedLyric.task = parseExecutor.submit(() -> {
+      LyricTimeline timeline = parseLyric(lyricCache, preloadedLyric.lyric, preloadedLyric.extendedLyrics);
+      if (!Thread.currentThread().isInterrupted()) preloadedLyric.timeline = timeline;
+    });
+    PreloadedLyric prevLyric = preloadedLyrics.put(id, preloadedLyric);
+    if (prevLyric != null) prevLyric.task.cancel(true);
+  }
+
+  /**
+   * switch to a preloaded lyric
+   * @return false if the id was not preloaded
+   */
+  public synchronized boolean activate(String id) {
+    PreloadedLyric preloadedLyric = preloadedLyrics.remove(id);
+    if (preloadedLyric == null) return false;
+    cancelSeek();
+    if (isPlay) pause();
+    this.lyric = preloadedLyric.lyric;
+    this.extendedLyrics = preloadedLyric.extendedLyrics;
+    LyricTimeline timeline = preloadedLyric.timeline;
+    if (timeline == null) {
+      // still parsing, the new task runs after it and takes the result from the cache
+      init();
+      return true;
+    }
+    if (parseTask != null) {
+      parseTask.cancel(true);
+      parseTask = null;
+    }
+    parseVersion++;
+    changedTrackMask = 0;
+    isParsing = false;
+    isPendingPlay = false;
+    setTimeline(timeline);
+    return true;
+  }
+
+  public synchronized void setPlaybackRate(float playbackRate) {
+    pendingClock.setRate(playbackRate);
+    seekClock.setRate(playbackRate);
+    if (!this.isPlay || timeline.size() == 0) {
+      clock.setRate(playbackRate);
+      return;
+    }
+    // keep the offset in real time at the new rate
+    int time = getCurrentTime() - getOffsetTime();
+    clock.setRate(playbackRate);
+    this.play(time);
+  }
+
+  /**
+   * played chars of a line for the karaoke fill, read by the overlay every frame from the published state
+   */
+  public float getLineProgress(int lineNum) {
+    PlayState playState = this.playState;
+    return playState.timeline.getLineProgress(lineNum, playState.getTime(clock.nanoTime()));
+  }
+
+  public boolean isPlaying() {
+    return playState.isPlay;
   }
 
   public void onPlay(int lineNum) {}
 
-  public void onSetLyric(List lines) {}
+  /**
+   * the extended lyrics of the current timeline changed
+   */
+  public void onUpdateTimeline(LyricTimeline timeline) {}
+
+  /**
+   * line of the next timeout after lineNum, the lines in between get no onPlay
+   */
+  int getNextWakeupLine(int lineNum) {
+    return lineNum + 1;
+  }
+
+  public void onSetLyric(LyricTimeline timeline) {}
 
 }
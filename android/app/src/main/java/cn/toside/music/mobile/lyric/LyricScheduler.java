@@ -0,0 +1,78 @@
+package cn.toside.music.mobile.lyric;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * Lyric timer
+ * Owns a single reusable callback, rescheduling removes the pending one from the message queue
+ * and allocates nothing
+ * Runs on its own thread, so UI jank does not delay line changes
+ */
+public class LyricScheduler {
+  private static HandlerThread timerThread = null;
+
+  private final Handler handler;
+  private final Runnable tickRunnable;
+  private volatile boolean isScheduled = false;
+  private volatile long plannedTime = 0;
+  private final LyricClock.TimeSource timeSource;
+  final LyricTimingStats stats;
+
+  LyricScheduler(Runnable task) {
+    this(task, LyricClock.SYSTEM_TIME_SOURCE);
+  }
+
+  LyricScheduler(Runnable task, LyricClock.TimeSource timeSource) {
+    this.timeSource = timeSource;
+    stats = new LyricTimingStats(timeSource);
+    handler = new Handler(getTimerLooper());
+    tickRunnable = () -> {
+      isScheduled = false;
+      stats.recordWakeup(now() - plannedTime);
+      task.run();
+    };
+  }
+
+  private long now() {
+    return timeSource.nanoTime() / 1000000;
+  }
+
+  static synchronized Looper getTimerLooper() {
+    if (timerThread == null) {
+      timerThread = new HandlerThread("LyricTimer", Process.THREAD_PRIORITY_DISPLAY);
+      timerThread.start();
+    }
+    return timerThread.getLooper();
+  }
+
+  public void schedule(long delay) {
+    handler.removeCallbacks(tickRunnable);
+    isScheduled = true;
+    plannedTime = now() + delay;
+    handler.postDelayed(tickRunnable, delay);
+  }
+
+  public void cancel() {
+    handler.removeCallbacks(tickRunnable);
+    isScheduled = false;
+  }
+
+  public boolean isScheduled() {
+    return isScheduled;
+  }
+
+  public void post(Runnable runnable) {
+    handler.post(runnable);
+  }
+
+  public void postDelayed(Runnable runnable, long delay) {
+    handler.postDelayed(runnable, delay);
+  }
+
+  public void removeCallbacks(Runnable runnable) {
+    handler.removeCallbacks(runnable);
+  }
+}
@@ -0,0 +1,112 @@
+package cn.toside.music.mobile.lyric;
+
+import android.os.Handler;
+
+import java.util.ArrayList;
+
+/**
+ * Consumer of the lyric line changes
+ * All the sinks share the parsed timeline and the lyric timer, each one has its own enable flag and throttle
+ */
+public abstract class LyricSink {
+  private static Handler handler = null;
+
+  private boolean isEnabled = true;
+  // min interval between two lines in ms, the last line of a burst is delivered when the interval ends
+  private int throttle = 0;
+  private long lastLineTime = 0;
+  private boolean isPending = false;
+  private LyricTimeline pendingTimeline = null;
+  private int pendingLineNum = 0;
+  private int pendingExtendedLyricMask = 0;
+  private final Runnable flushRunnable = this::flush;
+  private final LyricClock.TimeSource timeSource;
+
+  public LyricSink() {
+    this(LyricClock.SYSTEM_TIME_SOURCE);
+  }
+
+  LyricSink(LyricClock.TimeSource timeSource) {
+    this.timeSource = timeSource;
+  }
+
+  private long now() {
+    return timeSource.nanoTime() / 1000000;
+  }
+
+  private static synchronized Handler getHandler() {
+    if (handler == null) handler = new Handler(LyricScheduler.getTimerLooper());
+    return handler;
+  }
+
+  public synchronized boolean isEnabled() {
+    return isEnabled;
+  }
+
+  public synchronized void setEnabled(boolean isEnabled) {
+    this.isEnabled = isEnabled;
+    if (!isEnabled) cancelPending();
+  }
+
+  public synchronized void setThrottle(int throttle) {
+    this.throttle = Math.max(throttle, 0);
+  }
+
+  synchronized void dispatch(LyricTimeline timeline, int lineNum, int extendedLyricMask) {
+    if (!isEnabled) return;
+    long now = now();
+    long wait = lastLineTime + throttle - now;
+    if (wait > 0) {
+      pendingTimeline = timeline;
+      pendingLineNum = lineNum;
+      pendingExtendedLyricMask = extendedLyricMask;
+      if (!isPending) {
+        isPending = true;
+        getHandler().postDelayed(flushRunnable, wait);
+      }
+      return;
+    }
+    cancelPending();
+    lastLineTime = now;
+    onLine(timeline, lineNum, extendedLyricMask);
+  }
+
+  private synchronized void flush() {
+    if (!isPending) return;
+    isPending = false;
+    LyricTimeline timeline = pendingTimeline;
+    pendingTimeline = null;
+    lastLineTime = now();
+    onLine(timeline, pendingLineNum, pendingExtendedLyricMask);
+  }
+
+  private void cancelPending() {
+    if (!isPending) return;
+    isPending = false;
+    pendingTimeline = null;
+    getHandler().removeCallbacks(flushRunnable);
+  }
+
+  /**
+   * a new lyric is ready, called before its first line
+   */
+  public void onTimeline(LyricTimeline timeline) {}
+
+  /**
+   * @param lineNum -1 or out of range for no line
+   * @param extendedLyricMask visible tracks of the extended lyrics
+   */
+  public abstract void onLine(LyricTimeline timeline, int lineNum, int extendedLyricMask);
+
+  static boolean isValidLine(LyricTimeline timeline, int lineNum) {
+    return lineNum >= 0 && lineNum < timeline.size();
+  }
+
+  static String getText(LyricTimeline timeline, int lineNum) {
+    return isValidLine(timeline, lineNum) ? timeline.getText(lineNum) : "";
+  }
+
+  static ArrayList<String> getExtendedLyrics(LyricTimeline timeline, int lineNum, int extendedLyricMask) {
+    return isValidLine(timeline, lineNum) ? timeline.getExtendedLyrics(lineNum, extendedLyricMask) : new ArrayList<>(0);
+  }
+}
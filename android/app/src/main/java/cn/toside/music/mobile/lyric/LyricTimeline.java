@@ -0,0 +1,308 @@
+package cn.toside.music.mobile.lyric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable parsed lyric, lines are sorted by time
+ * The extended lyrics of line i are extendedTexts[extendedOffsets[i]] until extendedTexts[extendedOffsets[i + 1]]
+ * extendedTracks holds the source of each extended lyric: TRACK_MAIN for a repeated time of the main lyric,
+ * otherwise the index of the extended lyric plus one, up to MAX_TRACK
+ * With word timing the words of line i are wordIndexes[i] until wordIndexes[i + 1], each one has the start
+ * position in the text and the start time as an offset from the line time, wordIndexes is null for plain LRC
+ */
+public final class LyricTimeline {
+  static final int TRACK_MAIN = 0;
+  // the visible tracks are selected by an int mask
+  static final int MAX_TRACK = 31;
+  static final LyricTimeline EMPTY = new LyricTimeline(new int[0], new String[0], new int[]{ 0 }, new String[0], new byte[0], 0, null, null, null);
+  private static final Pattern tagPattern = Pattern.compile("\\[(ti|ar|al|offset|by):\\s*(\\S+(?:\\s+\\S+)*)\\s*]");
+
+  final int[] times;
+  final String[] texts;
+  final int[] extendedOffsets;
+  final String[] extendedTexts;
+  final byte[] extendedTracks;
+  // [offset:] tag
+  final int offset;
+  final int[] wordIndexes;
+  final int[] wordPositions;
+  final int[] wordTimes;
+
+  LyricTimeline(int[] times, String[] texts, int[] extendedOffsets, String[] extendedTexts, byte[] extendedTracks, int offset,
+                int[] wordIndexes, int[] wordPositions, int[] wordTimes) {
+    this.times = times;
+    this.texts = texts;
+    this.extendedOffsets = extendedOffsets;
+    this.extendedTexts = extendedTexts;
+    this.extendedTracks = extendedTracks;
+    this.offset = offset;
+    this.wordIndexes = wordIndexes;
+    this.wordPositions = wordPositions;
+    this.wordTimes = wordTimes;
+  }
+
+  public int size() {
+    return times.length;
+  }
+
+  public int getTime(int lineNum) {
+    return times[lineNum];
+  }
+
+  public String getText(int lineNum) {
+    return texts[lineNum];
+  }
+
+  public ArrayList<String> getExtendedLyrics(int lineNum) {
+    return getExtendedLyrics(lineNum, -1);
+  }
+
+  /**
+   * @param trackMask bit (1 << track) selects the visible tracks
+   */
+  public ArrayList<String> getExtendedLyrics(int lineNum, int trackMask) {
+    int start = extendedOffsets[lineNum];
+    int end = extendedOffsets[lineNum + 1];
+    ArrayList<String> extendedLyrics = new ArrayList<>(end - start);
+    for (int i = start; i < end; i++) {
+      if ((trackMask & (1 << extendedTracks[i])) != 0) extendedLyrics.add(extendedTexts[i]);
+    }
+    return extendedLyrics;
+  }
+
+  public boolean hasWordTime(int lineNum) {
+    return wordIndexes != null && wordIndexes[lineNum] < wordIndexes[lineNum + 1];
+  }
+
+  /**
+   * played part of the line for the karaoke fill, allocates nothing
+   * @param time lyric time
+   * @return played chars, fractional inside the current word, -1 if the line has no word timing
+   */
+  public float getWordProgress(int lineNum, int time) {
+    if (lineNum < 0 || lineNum >= times.length || !hasWordTime(lineNum)) return -1;
+    int start = wordIndexes[lineNum];
+    int end = wordIndexes[lineNum + 1];
+    time -= times[lineNum];
+    if (time < wordTimes[start]) return 0;
+    int word = start;
+    while (word + 1 < end && wordTimes[word + 1] <= time) word++;
+    int wordStart = wordPositions[word];
+    int wordEnd;
+    int duration;
+    if (word + 1 < end) {
+      wordEnd = wordPositions[word + 1];
+      duration = wordTimes[word + 1] - wordTimes[word];
+    } else {
+      // the last word lasts until the next line
+      wordEnd = texts[lineNum].length();
+      duration = lineNum + 1 < times.length ? times[lineNum + 1] - times[lineNum] - wordTimes[word] : 0;
+    }
+    if (duration <= 0 || time - wordTimes[word] >= duration) return wordEnd;
+    return wordStart + (wordEnd - wordStart) * (time - wordTimes[word]) / (float) duration;
+  }
+
+  /**
+   * played part of the line for the karaoke fill, by the word times or else in proportion to the line time
+   * @param time lyric time
+   * @return played chars of the line text
+   */
+  public float getLineProgress(int lineNum, int time) {
+    float progress = getWordProgress(lineNum, time);
+    if (progress >= 0) return progress;
+    if (lineNum < 0 || lineNum >= times.length) return 0;
+    int length = texts[lineNum].length();
+    time -= times[lineNum];
+    if (time <= 0) return 0;
+    // the last line has no end time
+    if (lineNum + 1 >= times.length) return length;
+    int duration = times[lineNum + 1] - times[lineNum];
+    if (time >= duration) return length;
+    return length * time / (float) duration;
+  }
+
+  private static int parseOffset(String lyric) {
+    String offsetStr = null;
+    Matcher matcher = tagPattern.matcher(lyric);
+    while (matcher.find()) {
+      if ("offset".equals(matcher.group(1))) offsetStr = matcher.group(2);
+    }
+    if (offsetStr == null || offsetStr.equals("")) return 0;
+    try {
+      return Integer.parseInt(offsetStr);
+    } catch (Exception err) {
+      return 0;
+    }
+  }
+
+  /**
+   * growable time and text pairs
+   */
+  private static final class Entries {
+    int size = 0;
+    int[] values = new int[64];
+    String[] texts = new String[64];
+    // allocated by the first line with word timing
+    int[][] words = null;
+
+    void add(int value, String text) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+        texts = Arrays.copyOf(texts, size * 2);
+        if (words != null) words = Arrays.copyOf(words, size * 2);
+      }
+      values[size] = value;
+      texts[size++] = text;
+    }
+
+    void add(int value, String text, int[] words) {
+      if (words != null && this.words == null) this.words = new int[values.length][];
+      add(value, text);
+      if (this.words != null) this.words[size - 1] = words;
+    }
+
+    /**
+     * entry indexes stable sorted by value
+     */
+    int[] sortedIndexes() {
+      // high bits hold the value, low bits the index
+      long[] order = new long[size];
+      for (int i = 0; i < size; i++) order[i] = ((long) values[i] << 32) | i;
+      Arrays.sort(order);
+      int[] indexes = new int[size];
+      for (int i = 0; i < size; i++) indexes[i] = (int) order[i];
+      return indexes;
+    }
+  }
+
+  private static Entries scan(String lyric) {
+    Entries entries = new Entries();
+    LrcScanner scanner = new LrcScanner(lyric);
+    while (scanner.nextLine()) {
+      String text = scanner.getText();
+      int[] words = scanner.getWords();
+      boolean isFirstTime = true;
+      while (scanner.nextTime()) {
+        int time = scanner.getTime();
+        if (words != null && isFirstTime) {
+          // the word times of a repeated line are relative to its first time
+          for (int i = 1; i < words.length; i += 2) words[i] -= time;
+        }
+        isFirstTime = false;
+        entries.add(time, text, words);
+      }
+    }
+    return entries;
+  }
+
+  public static LyricTimeline parse(String lyric, List<String> extendedLyrics) {
+    if (lyric == null) lyric = "";
+    Entries lines = scan(lyric);
+    int[] order = lines.sortedIndexes();
+
+    // the first text of a time is the line, the rest belongs to its extended lyrics
+    int lineCount = 0;
+    int[] times = new int[lines.size];
+    String[] texts = new String[lines.size];
+    int[][] lineWords = lines.words == null ? null : new int[lines.size][];
+    // values hold the line index and the track
+    Entries extended = new Entries();
+    for (int index : order) {
+      int time = lines.values[index];
+      if (lineCount > 0 && times[lineCount - 1] == time) {
+        extended.add((lineCount - 1) << 8 | TRACK_MAIN, lines.texts[index]);
+        continue;
+      }
+      if (lineWords != null) lineWords[lineCount] = lines.words[index];
+      times[lineCount] = time;
+      texts[lineCount++] = lines.texts[index];
+    }
+    if (lineCount < times.length) {
+      times = Arrays.copyOf(times, lineCount);
+      texts = Arrays.copyOf(texts, lineCount);
+    }
+
+    if (extendedLyrics != null) {
+      for (int track = 1; track <= extendedLyrics.size() && track <= MAX_TRACK; track++) {
+        addTrack(extended, times, track, extendedLyrics.get(track - 1));
+      }
+    }
+
+    int[] wordIndexes = null;
+    int[] wordPositions = null;
+    int[] wordTimes = null;
+    if (lineWords != null) {
+      wordIndexes = new int[lineCount + 1];
+      for (int i = 0; i < lineCount; i++) {
+        wordIndexes[i + 1] = wordIndexes[i] + (lineWords[i] == null ? 0 : lineWords[i].length / 2);
+      }
+      wordPositions = new int[wordIndexes[lineCount]];
+      wordTimes = new int[wordIndexes[lineCount]];
+      for (int i = 0; i < lineCount; i++) {
+        if (lineWords[i] == null) continue;
+        for (int j = 0, word = wordIndexes[i]; j < lineWords[i].length; j += 2, word++) {
+          wordPositions[word] = lineWords[i][j];
+          wordTimes[word] = lineWords[i][j + 1];
+        }
+      }
+    }
+
+    return create(times, texts, extended, parseOffset(lyric), wordIndexes, wordPositions, wordTimes);
+  }
+
+  /**
+   * copy with the lines of one extended lyric replaced, the main lyric and the other tracks are not parsed again
+   */
+  LyricTimeline withTrack(int track, String lyric) {
+    if (track <= TRACK_MAIN || track > MAX_TRACK) throw new IllegalArgumentException("invalid track: " + track);
+    Entries extended = new Entries();
+    for (int lineNum = 0; lineNum < times.length; lineNum++) {
+      for (int i = extendedOffsets[lineNum]; i < extendedOffsets[lineNum + 1]; i++) {
+        if (extendedTracks[i] != track) extended.add(lineNum << 8 | extendedTracks[i], extendedTexts[i]);
+      }
+    }
+    addTrack(extended, times, track, lyric);
+    // keep the tracks of a line in order
+    Entries sorted = new Entries();
+    for (int index : extended.sortedIndexes()) sorted.add(extended.values[index], extended.texts[index]);
+    return create(times, texts, sorted, offset, wordIndexes, wordPositions, wordTimes);
+  }
+
+  /**
+   * add the lines of an extended lyric that share a time with a main line
+   * entry values hold the line index and the track
+   */
+  private static void addTrack(Entries extended, int[] times, int track, String lyric) {
+    Entries entries = scan(lyric);
+    // merge join of two sorted time lists
+    int lineNum = 0;
+    for (int index : entries.sortedIndexes()) {
+      int time = entries.values[index];
+      while (lineNum < times.length && times[lineNum] < time) lineNum++;
+      if (lineNum == times.length) break;
+      if (times[lineNum] == time) extended.add(lineNum << 8 | track, entries.texts[index]);
+    }
+  }
+
+  private static LyricTimeline create(int[] times, String[] texts, Entries extended, int offset,
+                                      int[] wordIndexes, int[] wordPositions, int[] wordTimes) {
+    int lineCount = times.length;
+    int[] offsets = new int[lineCount + 1];
+    for (int i = 0; i < extended.size; i++) offsets[(extended.values[i] >> 8) + 1]++;
+    for (int i = 0; i < lineCount; i++) offsets[i + 1] += offsets[i];
+    int[] positions = Arrays.copyOf(offsets, lineCount);
+    String[] extendedTexts = new String[extended.size];
+    byte[] extendedTracks = new byte[extended.size];
+    for (int i = 0; i < extended.size; i++) {
+      int position = positions[extended.values[i] >> 8]++;
+      extendedTexts[position] = extended.texts[i];
+      extendedTracks[position] = (byte) extended.values[i];
+    }
+    return new LyricTimeline(times, texts, offsets, extendedTexts, extendedTracks, offset,
+      wordIndexes, wordPositions, wordTimes);
+  }
+}
@@ -0,0 +1,123 @@
+package cn.toside.music.mobile.lyric;
+
+/**
+ * Lyric timer statistics
+ * Drift is the actual minus the planned fire time of a line, kept in a fixed 1 ms histogram,
+ * so recording allocates nothing
+ */
+public class LyricTimingStats {
+  private static final int DRIFT_MIN = -100;
+  private static final int DRIFT_MAX = 2000;
+
+  private final int[] driftHistogram = new int[DRIFT_MAX - DRIFT_MIN + 1];
+  private int driftCount = 0;
+  private int skipCount = 0;
+  private int wakeupCount = 0;
+  // lines that shared the wakeup of a later line
+  private int coalescedLineCount = 0;
+  private boolean isScreenOff = false;
+  private int screenOffWakeupCount = 0;
+  // playing time
+  private long activeTime = 0;
+  private long screenOffActiveTime = 0;
+  private long activeSince = 0;
+  private final LyricClock.TimeSource timeSource;
+
+  LyricTimingStats() {
+    this(LyricClock.SYSTEM_TIME_SOURCE);
+  }
+
+  LyricTimingStats(LyricClock.TimeSource timeSource) {
+    this.timeSource = timeSource;
+  }
+
+  private long now() {
+    return timeSource.nanoTime() / 1000000;
+  }
+
+  synchronized void recordWakeup(long drift) {
+    wakeupCount++;
+    if (isScreenOff) screenOffWakeupCount++;
+    if (drift < DRIFT_MIN) drift = DRIFT_MIN;
+    else if (drift > DRIFT_MAX) drift = DRIFT_MAX;
+    driftHistogram[(int) drift - DRIFT_MIN]++;
+    driftCount++;
+  }
+
+  synchronized void recordSkip() {
+    skipCount++;
+  }
+
+  synchronized void recordCoalesced(int lineCount) {
+    coalescedLineCount += lineCount;
+  }
+
+  synchronized void start() {
+    if (activeSince == 0) activeSince = now();
+  }
+
+  synchronized void stop() {
+    if (activeSince == 0) return;
+    updateActiveTime();
+    activeSince = 0;
+  }
+
+  synchronized void setScreenOff(boolean isScreenOff) {
+    if (this.isScreenOff == isScreenOff) return;
+    if (activeSince != 0) updateActiveTime();
+    this.isScreenOff = isScreenOff;
+  }
+
+  private void updateActiveTime() {
+    long now = now();
+    activeTime += now - activeSince;
+    if (isScreenOff) screenOffActiveTime += now - activeSince;
+    activeSince = now;
+  }
+
+  /**
+   * @param percentile 0 - 100
+   * @return drift in ms, values out of range are clamped to the histogram bounds
+   */
+  public synchronized int getDrift(int percentile) {
+    if (driftCount == 0) return 0;
+    long target = ((long) driftCount * percentile + 99) / 100;
+    if (target < 1) target = 1;
+    long count = 0;
+    for (int i = 0; i < driftHistogram.length; i++) {
+      count += driftHistogram[i];
+      if (count >= target) return i + DRIFT_MIN;
+    }
+    return DRIFT_MAX;
+  }
+
+  public synchronized int getSkipCount() {
+    return skipCount;
+  }
+
+  public synchronized int getWakeupCount() {
+    return wakeupCount;
+  }
+
+  public synchronized int getCoalescedLineCount() {
+    return coalescedLineCount;
+  }
+
+  public synchronized int getScreenOffWakeupCount() {
+    return screenOffWakeupCount;
+  }
+
+  public synchronized float getWakeupsPerMinute() {
+    long time = activeTime;
+    if (activeSince != 0) time += now() - activeSince;
+    if (time <= 0) return 0;
+    return wakeupCount * 60000f / time;
+  }
+
+  public synchronized float getScreenOffWakeupsPerMinute() {
+    long time = screenOffActiveTime;
+    if (activeSince != 0 && isScreenOff) time += now() - activeSince;
+    if (time <= 0) return 0;
+    return screenOffWakeupCount * 60000f / time;
+  }
+}
@@ -23,17 +23,20 @@ import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.WritableMap;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import cn.toside.music.mobile.R;
 
 public class LyricView extends Activity implements View.OnTouchListener {
-  LyricSwitchView textView = null;
+  LyricCanvasView textView = null;
   WindowManager windowManager = null;
   WindowManager.LayoutParams layoutParams = null;
   final private ReactApplicationContext reactContext;
   final private LyricEvent lyricEvent;
+  // clock of the karaoke fill
+  final private LyricPlayer player;
 
   // private int winWidth = 0;
 
@@ -53,6 +56,8 @@ public class LyricView extends Activity implements View.OnTouchListener {
   private boolean isLock = false;
   private boolean isSingleLine = false;
   private boolean isShowToggleAnima = false;
+  // screen off, the text animations stop
+  private boolean isPaused = false;
   private String unplayColor = "rgba(255, 255, 255, 1)";
   private String playedColor = "rgba(7, 197, 86, 1)";
   private String shadowColor = "rgba(0, 0, 0, 0.15)";
@@ -68,6 +73,21 @@ public class LyricView extends Activity implements View.OnTouchListener {
   // private float lineHeight = 1;
   private String currentLyric = "LX Music ^-^";
   private ArrayList<String> currentExtendedLyrics = new ArrayList<>();
+  private int currentLineNum = -1;
+  // latest line from the lyric timer thread, waiting to be applied on the ui thread
+  private String pendingLyric = "";
+  private ArrayList<String> pendingExtendedLyrics = new ArrayList<>();
+  private int pendingLineNum = -1;
+  private boolean isLyricPosted = false;
+  private final Runnable applyLyricRunnable = this::applyPendingLyric;
+  // the upcoming lines are measured in the background
+  private static final int PREPARE_LINE_COUNT = 3;
+  private final LyricLayoutCache layoutCache = new LyricLayoutCache();
+
+  private static final Pattern colorPattern = Pattern.compile("rgba? *\\( *(\\d+), *(\\d+), *(\\d+)(?:, *([\\d.]+))? *\\)");
+  // parsed colors, a theme only has a few
+  private static final int MAX_COLOR_CACHE_SIZE = 64;
+  private static final HashMap<String, Integer> colorCache = new HashMap<>();
 
   private int mLastRotation;
   private OrientationEventListener orientationEventListener = null;
@@ -75,9 +95,10 @@ public class LyricView extends Activity implements View.OnTouchListener {
   final Handler fixViewPositionHandler;
   final Runnable fixViewPositionRunnable = this::updateViewPosition;
 
-  LyricView(ReactApplicationContext reactContext, LyricEvent lyricEvent) {
+  LyricView(ReactApplicationContext reactContext, LyricEvent lyricEvent, LyricPlayer player) {
     this.reactContext = reactContext;
     this.lyricEvent = lyricEvent;
+    this.player = player;
     fixViewPositionHandler = new Handler();
   }
 
@@ -142,7 +163,6 @@ public class LyricView extends Activity implements View.OnTouchListener {
     int height = textView.getPaint().getFontMetricsInt(null) * maxLineNum;
     if (height > maxHeight - 100) height = maxHeight - 100;
     layoutParams.height = height;
-    textView.setHeight(height);
   }
 
   private void fixViewPosition() {
@@ -233,9 +253,20 @@ public class LyricView extends Activity implements View.OnTouchListener {
     listenOrientationEvent();
   }
   public static int parseColor(String input) {
+    synchronized (colorCache) {
+      Integer color = colorCache.get(input);
+      if (color != null) return color;
+    }
+    int color = parseColorString(input);
+    synchronized (colorCache) {
+      if (colorCache.size() >= MAX_COLOR_CACHE_SIZE) colorCache.clear();
+      colorCache.put(input, color);
+    }
+    return color;
+  }
+  private static int parseColorString(String input) {
     if (input.startsWith("#")) return Color.parseColor(input);
-    Pattern c = Pattern.compile("rgba? *\\( *(\\d+), *(\\d+), *(\\d+)(?:, *([\\d.]+))? *\\)");
-    Matcher m = c.matcher(input);
+    Matcher m = colorPattern.matcher(input);
     if (m.matches()) {
       int red = Integer.parseInt(m.group(1));
       int green = Integer.parseInt(m.group(2));
@@ -248,11 +279,11 @@ public class LyricView extends Activity implements View.OnTouchListener {
   }
 
   private void createTextView() {
-    textView = new LyricSwitchView(reactContext, isSingleLine, isShowToggleAnima);
-    textView.setText("");
-    textView.setText(currentLyric);
+    textView = new LyricCanvasView(reactContext, isSingleLine, isShowToggleAnima);
+    textView.setPlayer(player);
+    textView.setText(currentLyric, currentLineNum, currentLyric.length());
 
-    textView.setTextColor(parseColor(playedColor));
+    textView.setTextColor(parseColor(unplayColor), parseColor(playedColor));
     textView.setShadowColor(parseColor(shadowColor));
     textView.setAlpha(alpha);
     textView.setTextSize(textSize);
@@ -261,37 +292,13 @@ public class LyricView extends Activity implements View.OnTouchListener {
     //监听 OnTouch 事件 为了实现"移动歌词"功能
     textView.setOnTouchListener(this);
 
-    int textPositionX;
-    int textPositionY;
-    switch (textX) {
-      case "CENTER":
-        textPositionX = Gravity.CENTER;
-        break;
-      case "RIGHT":
-        textPositionX = Gravity.END;
-        break;
-      case "Left":
-      default:
-        textPositionX = Gravity.START;
-        break;
-    }
-    switch (textY) {
-      case "CENTER":
-        textPositionY = Gravity.CENTER;
-        break;
-      case "BOTTOM":
-        textPositionY = Gravity.BOTTOM;
-        break;
-      case "TOP":
-      default:
-        textPositionY = Gravity.TOP;
-        break;
-    }
-    textView.setGravity(textPositionX | textPositionY);
+    textView.setGravity(getTextGravity());
 
     if (!isSingleLine) {
       textView.setMaxLines(maxLineNum);
     }
+    textView.setPaused(isPaused);
+    textView.setLayoutCache(layoutCache);
   }
   private void handleShowLyric() {
     if (windowManager == null) {
@@ -369,11 +376,52 @@ public class LyricView extends Activity implements View.OnTouchListener {
     windowManager.addView(textView, layoutParams);
   }
 
-  public void setLyric(String text, ArrayList<String> extendedLyrics) {
-    if (text.equals("") && text.equals(currentLyric) && extendedLyrics.size() == 0) return;
-    currentLyric = text;
-    currentExtendedLyrics = extendedLyrics;
+  /**
+   * set lyric from any thread, only the latest line is applied
+   * @param lineNum line of the player for the karaoke fill, -1 for none
+   */
+  public void postLyric(String text, ArrayList<String> extendedLyrics, int lineNum) {
+    synchronized (applyLyricRunnable) {
+      pendingLyric = text;
+      pendingExtendedLyrics = extendedLyrics;
+      pendingLineNum = lineNum;
+      if (isLyricPosted) return;
+      isLyricPosted = true;
+    }
+    runOnUiThread(applyLyricRunnable);
+  }
+
+  private void applyPendingLyric() {
+    String text;
+    ArrayList<String> extendedLyrics;
+    int lineNum;
+    synchronized (applyLyricRunnable) {
+      isLyricPosted = false;
+      text = pendingLyric;
+      extendedLyrics = pendingExtendedLyrics;
+      lineNum = pendingLineNum;
+    }
+    setLyric(text, extendedLyrics, lineNum);
+  }
+
+  /**
+   * measure the lines after lineNum in the background, can be called from any thread
+   */
+  public void prepareLyrics(LyricTimeline timeline, int lineNum, int extendedLyricMask) {
     if (textView == null) return;
+    int end = Math.min(lineNum + 1 + PREPARE_LINE_COUNT, timeline.size());
+    if (lineNum + 1 >= end) return;
+    ArrayList<String> texts = new ArrayList<>(end - lineNum - 1);
+    for (int i = lineNum + 1; i < end; i++) {
+      texts.add(getLyricText(timeline.getText(i), timeline.getExtendedLyrics(i, extendedLyricMask)));
+    }
+    layoutCache.prepare(texts);
+  }
+
+  /**
+   * the line with the extended lyrics that fit in the view
+   */
+  private String getLyricText(String text, ArrayList<String> extendedLyrics) {
     if (extendedLyrics.size() > 0 && maxLineNum > 1 && !isSingleLine) {
       int num = maxLineNum - 1;
       StringBuilder textBuilder = new StringBuilder(text);
@@ -383,8 +431,16 @@ public class LyricView extends Activity implements View.OnTouchListener {
       }
       text = textBuilder.toString();
     }
+    return text;
+  }
+
+  public void setLyric(String text, ArrayList<String> extendedLyrics, int lineNum) {
+    if (text.equals("") && text.equals(currentLyric) && extendedLyrics.size() == 0) return;
+    currentLyric = text;
+    currentExtendedLyrics = extendedLyrics;
+    currentLineNum = lineNum;
     if (textView == null) return;
-    textView.setText(text);
+    textView.setText(getLyricText(text, extendedLyrics), lineNum, text.length());
   }
 
   public void setMaxLineNum(int maxLineNum) {
@@ -517,7 +573,7 @@ public class LyricView extends Activity implements View.OnTouchListener {
     this.playedColor = playedColor;
     this.shadowColor = shadowColor;
     if (textView == null) return;
-    textView.setTextColor(parseColor(playedColor));
+    textView.setTextColor(parseColor(unplayColor), parseColor(playedColor));
     textView.setShadowColor(parseColor(shadowColor));
     // windowManager.updateViewLayout(textView, layoutParams);
   }
@@ -526,6 +582,11 @@ public class LyricView extends Activity implements View.OnTouchListener {
     this.textX = textX;
     this.textY = textY;
     if (windowManager == null || textView == null) return;
+    textView.setGravity(getTextGravity());
+    windowManager.updateViewLayout(textView, layoutParams);
+  }
+
+  private int getTextGravity() {
     int textPositionX;
     int textPositionY;
     // Log.d("Lyric", "textX: " + textX + "  textY: " + textY);
@@ -553,8 +614,14 @@ public class LyricView extends Activity implements View.OnTouchListener {
         textPositionY = Gravity.TOP;
         break;
     }
-    textView.setGravity(textPositionX | textPositionY);
-    windowManager.updateViewLayout(textView, layoutParams);
+    return textPositionX | textPositionY;
+  }
+
+  public void setPaused(boolean isPaused) {
+    runOnUiThread(() -> {
+      this.isPaused = isPaused;
+      if (textView != null) textView.setPaused(isPaused);
+    });
   }
 
   public void setAlpha(float alpha) {
@@ -566,16 +633,10 @@ public class LyricView extends Activity implements View.OnTouchListener {
   public void setSingleLine(boolean isSingleLine) {
     this.isSingleLine = isSingleLine;
     if (textView == null) return;
-    windowManager.removeView(textView);
-    createTextView();
-    textView.setWidth(layoutParams.width);
-    textView.setHeight(layoutParams.height);
-    windowManager.addView(textView, layoutParams);
-
-    if (isLock) lockView();
-    else unlockView();
+    textView.setSingleLine(isSingleLine);
+    if (!isSingleLine) textView.setMaxLines(maxLineNum);
 
-    setLyric(currentLyric, currentExtendedLyrics);
+    setLyric(currentLyric, currentExtendedLyrics, currentLineNum);
   }
 
   public void setShowToggleAnima(boolean showToggleAnima) {
@@ -592,6 +653,82 @@ public class LyricView extends Activity implements View.OnTouchListener {
     windowManager.updateViewLayout(textView, layoutParams);
   }
 
+  /**
+   * apply any of the style options of showLyricView at once on the ui thread, the window is laid out once
+   */
+  public void updateStyle(Bundle options) {
+    runOnUiThread(() -> applyStyle(options));
+  }
+
+  private void applyStyle(Bundle options) {
+    String unplayColor = options.getString("unplayColor", this.unplayColor);
+    String playedColor = options.getString("playedColor", this.playedColor);
+    String shadowColor = options.getString("shadowColor", this.shadowColor);
+    boolean isColorChanged = !unplayColor.equals(this.unplayColor) || !playedColor.equals(this.playedColor) ||
+      !shadowColor.equals(this.shadowColor);
+    this.unplayColor = unplayColor;
+    this.playedColor = playedColor;
+    this.shadowColor = shadowColor;
+
+    String textX = options.getString("textX", this.textX);
+    String textY = options.getString("textY", this.textY);
+    boolean isPositionChanged = !textX.equals(this.textX) || !textY.equals(this.textY);
+    this.textX = textX;
+    this.textY = textY;
+
+    float alpha = (float) options.getDouble("alpha", this.alpha);
+    boolean isAlphaChanged = alpha != this.alpha;
+    this.alpha = alpha;
+
+    boolean isShowToggleAnima = options.getBoolean("isShowToggleAnima", this.isShowToggleAnima);
+    boolean isAnimaChanged = isShowToggleAnima != this.isShowToggleAnima;
+    this.isShowToggleAnima = isShowToggleAnima;
+
+    boolean isSingleLine = options.getBoolean("isSingleLine", this.isSingleLine);
+    int maxLineNum = (int) options.getDouble("maxLineNum", this.maxLineNum);
+    boolean isLineChanged = isSingleLine != this.isSingleLine || maxLineNum != this.maxLineNum;
+    this.isSingleLine = isSingleLine;
+    this.maxLineNum = maxLineNum;
+
+    float textSize = (float) options.getDouble("textSize", this.textSize);
+    boolean isTextSizeChanged = textSize != this.textSize;
+    this.textSize = textSize;
+
+    float widthPercentage = options.containsKey("width") ? (float) options.getDouble("width") / 100f : this.widthPercentage;
+    boolean isWidthChanged = widthPercentage != this.widthPercentage;
+    this.widthPercentage = widthPercentage;
+
+    if (windowManager == null || textView == null) return;
+    textView.beginStyle();
+    if (isColorChanged) {
+      textView.setTextColor(parseColor(unplayColor), parseColor(playedColor));
+      textView.setShadowColor(parseColor(shadowColor));
+    }
+    if (isAlphaChanged) textView.setAlpha(alpha);
+    if (isAnimaChanged) textView.setShowAnima(isShowToggleAnima);
+    if (isPositionChanged) textView.setGravity(getTextGravity());
+    if (isLineChanged) {
+      textView.setSingleLine(isSingleLine);
+      if (!isSingleLine) textView.setMaxLines(maxLineNum);
+    }
+    if (isTextSizeChanged) textView.setTextSize(textSize);
+    if (isWidthChanged) {
+      layoutParams.width = (int)(maxWidth * widthPercentage);
+      textView.setWidth(layoutParams.width);
+    }
+    // the extended lyrics shown depend on the lines
+    if (isLineChanged) setLyric(currentLyric, currentExtendedLyrics, currentLineNum);
+    textView.endStyle();
+
+    if (!isWidthChanged && !isLineChanged && !isTextSizeChanged) return;
+    if (isLineChanged || isTextSizeChanged) setLayoutParamsHeight();
+    int maxX = maxWidth - layoutParams.width;
+    if (layoutParams.x > maxX) layoutParams.x = Math.max(maxX, 0);
+    int maxY = maxHeight - layoutParams.height;
+    if (layoutParams.y > maxY) layoutParams.y = Math.max(maxY, 0);
+    windowManager.updateViewLayout(textView, layoutParams);
+  }
+
   public void destroyView() {
     if (textView == null || windowManager == null) return;
     windowManager.removeView(textView);
@@ -0,0 +1,60 @@
+package cn.toside.music.mobile.utils;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Shared screen on/off receiver, registered once for the whole app
+ */
+public class ScreenStateReceiver {
+  public interface Listener {
+    void onScreenStateChange(boolean isScreenOn);
+  }
+
+  private static ScreenStateReceiver instance = null;
+
+  private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  private ScreenStateReceiver(Context context) {
+    final IntentFilter theFilter = new IntentFilter();
+    /** System Defined Broadcast */
+    theFilter.addAction(Intent.ACTION_SCREEN_ON);
+    theFilter.addAction(Intent.ACTION_SCREEN_OFF);
+
+    BroadcastReceiver screenOnOffReceiver = new BroadcastReceiver() {
+      @Override
+      public void onReceive(Context context, Intent intent) {
+        String strAction = intent.getAction();
+
+        switch (Objects.requireNonNull(strAction)) {
+          case Intent.ACTION_SCREEN_OFF:
+            for (Listener listener : listeners) listener.onScreenStateChange(false);
+            break;
+          case Intent.ACTION_SCREEN_ON:
+            for (Listener listener : listeners) listener.onScreenStateChange(true);
+            break;
+        }
+      }
+    };
+
+    context.registerReceiver(screenOnOffReceiver, theFilter);
+  }
+
+  public static synchronized ScreenStateReceiver getInstance(Context context) {
+    if (instance == null) instance = new ScreenStateReceiver(context.getApplicationContext());
+    return instance;
+  }
+
+  public void addListener(Listener listener) {
+    listeners.addIfAbsent(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+}
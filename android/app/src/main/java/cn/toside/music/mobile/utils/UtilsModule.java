@@ -2,10 +2,8 @@ package cn.toside.music.mobile.utils;
 
 import android.annotation.SuppressLint;
 import android.app.Activity;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.graphics.Rect;
 import android.net.Uri;
 import android.net.wifi.WifiInfo;
@@ -69,33 +67,11 @@ public class UtilsModule extends ReactContextBaseJavaModule {
   }
 
   private void registerScreenBroadcastReceiver() {
-    final IntentFilter theFilter = new IntentFilter();
-    /** System Defined Broadcast */
-    theFilter.addAction(Intent.ACTION_SCREEN_ON);
-    theFilter.addAction(Intent.ACTION_SCREEN_OFF);
-
-    BroadcastReceiver screenOnOffReceiver = new BroadcastReceiver() {
-      @Override
-      public void onReceive(Context context, Intent intent) {
-        String strAction = intent.getAction();
-
-        WritableMap params = Arguments.createMap();
-
-        switch (Objects.requireNonNull(strAction)) {
-          case Intent.ACTION_SCREEN_OFF:
-
-            params.putString("state", "OFF");
-            utilsEvent.sendEvent(utilsEvent.SCREEN_STATE, params);
-            break;
-          case Intent.ACTION_SCREEN_ON:
-            params.putString("state", "ON");
-            utilsEvent.sendEvent(utilsEvent.SCREEN_STATE, params);
-            break;
-        }
-      }
-    };
-
-    reactContext.registerReceiver(screenOnOffReceiver, theFilter);
+    ScreenStateReceiver.getInstance(reactContext).addListener(isScreenOn -> {
+      WritableMap params = Arguments.createMap();
+      params.putString("state", isScreenOn ? "ON" : "OFF");
+      utilsEvent.sendEvent(utilsEvent.SCREEN_STATE, params);
+    });
   }
 
   @ReactMethod
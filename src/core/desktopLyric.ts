@@ -2,12 +2,19 @@ import {
   hideDesktopLyricView,
   showDesktopLyricView,
   setSendLyricTextEvent,
+  setSendLyricIndexEvent,
+  setLyricLookahead,
   setLyric,
+  preloadLyric,
+  activateLyric,
   play,
+  syncPosition,
   pause,
   setPlaybackRate,
   toggleTranslation,
   toggleRoma,
+  setTrackVisible,
+  setExtendedLyric,
   toggleLock,
   setColor,
   setAlpha,
@@ -18,6 +25,7 @@ import {
   setMaxLineNum,
   setWidth,
   setLyricTextPosition,
+  updateStyle,
   checkOverlayPermission,
   openOverlayPermissionActivity,
   onPositionChange,
@@ -68,11 +76,28 @@ export const hideDesktopLyric = async() => {
 }
 
 export const playDesktopLyric = play
+export const syncDesktopLyricPosition = syncPosition
 export const pauseDesktopLyric = pause
-export const setDesktopLyric = setLyric
+
+// lyric parsed ahead for the next track
+let preloadedLyric: { id: string, lrc: string, tlrc: string, rlrc: string } | null = null
+export const preloadDesktopLyric = async(id: string, lrc: string, tlrc: string, rlrc: string) => {
+  preloadedLyric = { id, lrc, tlrc, rlrc }
+  return preloadLyric(id, lrc, tlrc, rlrc)
+}
+export const setDesktopLyric = async(lrc: string, tlrc: string, rlrc: string) => {
+  const lyric = preloadedLyric
+  if (lyric && lyric.id == playerState.musicInfo.id && lyric.lrc == lrc && lyric.tlrc == (tlrc || '') && lyric.rlrc == (rlrc || '')) {
+    preloadedLyric = null
+    if (await activateLyric(lyric.id)) return
+  }
+  return setLyric(lrc, tlrc, rlrc)
+}
 export const setDesktopLyricPlaybackRate = setPlaybackRate
 export const toggleDesktopLyricTranslation = toggleTranslation
 export const toggleDesktopLyricRoma = toggleRoma
+export const setDesktopLyricTrackVisible = setTrackVisible
+export const setDesktopExtendedLyric = setExtendedLyric
 export const toggleDesktopLyricLock = toggleLock
 export const setDesktopLyricColor = async(unplayColor: string | null, playedColor: string | null, shadowColor: string | null) => {
   return setColor(unplayColor ?? settingState.setting['desktopLyric.style.lyricUnplayColor'],
@@ -90,6 +115,8 @@ export const setDesktopLyricWidth = setWidth
 export const setDesktopLyricTextPosition = async(x: LX.AppSetting['desktopLyric.textPosition.x'] | null, y: LX.AppSetting['desktopLyric.textPosition.y'] | null) => {
   return setLyricTextPosition(x ?? settingState.setting['desktopLyric.textPosition.x'], y ?? settingState.setting['desktopLyric.textPosition.y'])
 }
+export const updateDesktopLyricStyle = updateStyle
+export const setRemoteLyricLookahead = setLyricLookahead
 export const checkDesktopLyricOverlayPermission = checkOverlayPermission
 export const openDesktopLyricOverlayPermissionActivity = openOverlayPermissionActivity
 export const onDesktopLyricPositionChange = onPositionChange
@@ -98,6 +125,7 @@ export const onDesktopLyricPositionChange = onPositionChange
 export const showRemoteLyric = async(isSend: boolean) => {
   await setSendLyricTextEvent(isSend)
   if (isSend) {
+    await setSendLyricIndexEvent(true)
     let lrc = playerState.musicInfo.lrc ?? ''
     let tlrc = playerState.musicInfo.tlrc ?? ''
     let rlrc = playerState.musicInfo.rlrc ?? ''
@@ -1,5 +1,6 @@
 import { updateListMusics } from '@/core/list'
 import { setMaxplayTime, setNowPlayTime } from '@/core/player/progress'
+import { syncDesktopLyricPosition } from '@/core/desktopLyric'
 import { setCurrentTime, getDuration, getPosition } from '@/plugins/player'
 import { formatPlayTime2 } from '@/utils/common'
 import { savePlayInfo } from '@/utils/data'
@@ -32,6 +33,9 @@ export default () => {
       if (!position || id != playerState.musicInfo.id) return
       setNowPlayTime(position)
       if (!playerState.isPlay) return
+      if (settingState.setting['desktopLyric.enable'] || settingState.setting['player.isShowBluetoothLyric']) {
+        syncDesktopLyricPosition(position * 1000, settingState.setting['player.playbackRate'])
+      }
 
       if (settingState.setting['player.isSavePlayTime'] && !playerState.playMusicInfo.isTempPlay && isScreenOn) {
         delaySavePlayInfo()
@@ -1,7 +1,9 @@
-import { getMusicUrl } from '@/core/music'
+import { getLyricInfo, getMusicUrl } from '@/core/music'
+import { preloadDesktopLyric } from '@/core/desktopLyric'
 import { getNextPlayMusicInfo, resetRandomNextMusicInfo } from '@/core/player/player'
 import { checkUrl } from '@/utils/request'
 import playerState from '@/store/player/state'
+import settingState from '@/store/setting/state'
 import { isCached } from '@/plugins/player/utils'
 
 
@@ -15,6 +17,12 @@ const resetPreloadInfo = () => {
   preloadMusicInfo.info = null
   preloadMusicInfo.isLoading = false
 }
+const preloadNextLyric = async(musicInfo: LX.Player.PlayMusic) => {
+  if (!settingState.setting['desktopLyric.enable'] && !settingState.setting['player.isShowBluetoothLyric']) return
+  const lyricInfo = await getLyricInfo({ musicInfo }).catch(() => null)
+  if (!lyricInfo) return
+  void preloadDesktopLyric(musicInfo.id, lyricInfo.lyric, lyricInfo.tlyric ?? '', lyricInfo.rlyric ?? '')
+}
 const preloadNextMusicUrl = async(curTime: number) => {
   if (preloadMusicInfo.isLoading || curTime - preloadMusicInfo.preProgress < 3) return
   preloadMusicInfo.isLoading = true
@@ -22,6 +30,7 @@ const preloadNextMusicUrl = async(curTime: number) => {
   const info = await getNextPlayMusicInfo()
   if (info) {
     preloadMusicInfo.info = info
+    void preloadNextLyric(info.musicInfo)
     const url = await getMusicUrl({ musicInfo: info.musicInfo }).catch(() => '')
     if (url) {
       console.log('preload url', url)
@@ -76,14 +76,23 @@ export const setPlaybackRate = async(playbackRate: number) => {
   }
 }
 
+/**
+ * 只重新定位应用内歌词，桌面歌词切换轨道时不会打断正在运行的调度
+ */
+const replayLrc = () => {
+  void getPosition().then((position) => {
+    lrcPlay(position * 1000)
+  })
+}
+
 /**
  * toggle show translation
  * @param isShowTranslation is show translation
  */
 export const toggleTranslation = async(isShowTranslation: boolean) => {
   lrcToggleTranslation(isShowTranslation)
+  if (playerState.isPlay) replayLrc()
   await toggleDesktopLyricTranslation(isShowTranslation)
-  if (playerState.isPlay) play()
 }
 
 /**
@@ -92,8 +101,8 @@ export const toggleTranslation = async(isShowTranslation: boolean) => {
  */
 export const toggleRoma = async(isShowLyricRoma: boolean) => {
   lrcToggleRoma(isShowLyricRoma)
+  if (playerState.isPlay) replayLrc()
   await toggleDesktopLyricRoma(isShowLyricRoma)
-  if (playerState.isPlay) play()
 }
 
 export const play = () => {
@@ -1,4 +1,5 @@
 import { NativeModules, NativeEventEmitter } from 'react-native'
+import BackgroundTimer from 'react-native-background-timer'
 
 const { LyricModule } = NativeModules
 
@@ -32,6 +33,33 @@ const { LyricModule } = NativeModules
 const getAlpha = (num: number) => num / 100
 const getTextSize = (num: number) => num / 10
 
+interface LyricTimeline {
+  times: number[]
+  texts: string[]
+  extendedOffsets: number[]
+  extendedTexts: string[]
+  extendedTracks: number[]
+  // name of the extended track i + 1
+  trackNames: string[]
+}
+// same as the native extended lyric tracks
+const TRACK_MAIN = 0
+const TRACK_TRANSLATION = 'translation'
+const TRACK_ROMA = 'roma'
+const visibleTracks = new Set<string>()
+const isTrackVisible = (timeline: LyricTimeline, track: number) => {
+  return track == TRACK_MAIN || visibleTracks.has(timeline.trackNames[track - 1])
+}
+
+interface LyricBatchLine {
+  index: number
+  // due time, epoch ms
+  time: number
+  // missing in the index only mode
+  text?: string
+  extendedLyrics?: string[]
+}
+
 /**
  * 发送歌词事件
  * @param isShow
@@ -41,6 +69,42 @@ export const setSendLyricTextEvent = async(isSend: boolean) => {
   return LyricModule.setSendLyricTextEvent(isSend)
 }
 
+/**
+ * 歌词事件的最小发送间隔，间隔内的多行只发送最后一行
+ * @param throttle 间隔 ms，0 为不限制
+ * @returns
+ */
+export const setLyricEventThrottle = async(throttle: number) => {
+  return LyricModule.setLyricEventThrottle(throttle)
+}
+
+/**
+ * 只发送歌词行号，歌词在设置时一次性发送
+ * @param isSend
+ * @returns
+ */
+export const setSendLyricIndexEvent = async(isSend: boolean) => {
+  return LyricModule.setSendLyricIndexEvent(isSend)
+}
+
+/**
+ * 歌词不可见时一次性发送接下来的几行歌词，由 JS 定时播放
+ * @param count 行数，0 为关闭
+ * @returns
+ */
+export const setLyricLookahead = async(count: number) => {
+  return LyricModule.setLyricLookahead(count)
+}
+
+/**
+ * 息屏时在该时间窗口内到期的歌词行与前一行一起以批量事件发送，共用一次唤醒，不会丢行
+ * @param window 时间窗口 ms，默认 2000，0 为关闭
+ * @returns
+ */
+export const setScreenOffWakeupWindow = async(window: number) => {
+  return LyricModule.setScreenOffWakeupWindow(window)
+}
+
 /**
  * show lyric
  */
@@ -110,6 +174,16 @@ export const play = async(time: number): Promise<void> => {
   return LyricModule.play(time)
 }
 
+/**
+ * sync lyric time with the player position
+ * @param {Number} position player position in ms
+ * @param {Number} rate playback rate
+ * @param {Number} timestampNanos SystemClock.elapsedRealtimeNanos of the position, 0 for now
+ */
+export const syncPosition = (position: number, rate: number, timestampNanos = 0): void => {
+  LyricModule.syncPosition(position, rate, timestampNanos)
+}
+
 /**
  * pause lyric
  */
@@ -127,16 +201,44 @@ export const setLyric = async(lyric: string, translation: string, romalrc: strin
   return LyricModule.setLyric(lyric, translation || '', romalrc || '')
 }
 
+/**
+ * parse the lyric of an upcoming track in the background
+ * @param trackId music id
+ */
+export const preloadLyric = async(trackId: string, lyric: string, translation: string, romalrc: string): Promise<void> => {
+  return LyricModule.preloadLyric(trackId, lyric, translation || '', romalrc || '')
+}
+
+/**
+ * switch to a preloaded lyric
+ * @param trackId music id
+ * @returns false if the lyric was not preloaded
+ */
+export const activateLyric = async(trackId: string): Promise<boolean> => {
+  return LyricModule.activate(trackId)
+}
+
 export const setPlaybackRate = async(rate: number): Promise<void> => {
   return LyricModule.setPlaybackRate(rate)
 }
 
+/**
+ * 显示或隐藏扩展歌词
+ * @param name track name, translation and roma are the built-in ones
+ * @param isVisible is show the track
+ */
+export const setTrackVisible = async(name: string, isVisible: boolean): Promise<void> => {
+  if (isVisible) visibleTracks.add(name)
+  else visibleTracks.delete(name)
+  return LyricModule.setTrackVisible(name, isVisible)
+}
+
 /**
  * toggle show translation
  * @param isShowTranslation is show translation
  */
 export const toggleTranslation = async(isShowTranslation: boolean): Promise<void> => {
-  return LyricModule.toggleTranslation(isShowTranslation)
+  return setTrackVisible(TRACK_TRANSLATION, isShowTranslation)
 }
 
 /**
@@ -144,7 +246,16 @@ export const toggleTranslation = async(isShowTranslation: boolean): Promise<void
  * @param isShowRoma is show roma lyric
  */
 export const toggleRoma = async(isShowRoma: boolean): Promise<void> => {
-  return LyricModule.toggleRoma(isShowRoma)
+  return setTrackVisible(TRACK_ROMA, isShowRoma)
+}
+
+/**
+ * 设置扩展歌词，只解析这一轨
+ * @param name track name, an unknown name adds a track
+ * @param lyric lrc text
+ */
+export const setExtendedLyric = async(name: string, lyric: string): Promise<void> => {
+  return LyricModule.setExtendedLyric(name, lyric)
 }
 
 /**
@@ -209,6 +320,67 @@ export const setLyricTextPosition = async(textX: LX.AppSetting['desktopLyric.tex
   return LyricModule.setLyricTextPosition(textX.toUpperCase(), textY.toUpperCase())
 }
 
+/**
+ * 批量设置样式，只需传入要修改的项，歌词窗口只会重新布局一次
+ */
+export const updateStyle = async({
+  isShowToggleAnima,
+  isSingleLine,
+  width,
+  maxLineNum,
+  unplayColor,
+  playedColor,
+  shadowColor,
+  opacity,
+  textSize,
+  textPositionX,
+  textPositionY,
+}: Partial<{
+  isShowToggleAnima: boolean
+  isSingleLine: boolean
+  width: number
+  maxLineNum: number
+  unplayColor: string
+  playedColor: string
+  shadowColor: string
+  opacity: number
+  textSize: number
+  textPositionX: LX.AppSetting['desktopLyric.textPosition.x']
+  textPositionY: LX.AppSetting['desktopLyric.textPosition.y']
+}>): Promise<void> => {
+  const style: Record<string, string | number | boolean> = {}
+  if (isShowToggleAnima != null) style.isShowToggleAnima = isShowToggleAnima
+  if (isSingleLine != null) style.isSingleLine = isSingleLine
+  if (width != null) style.width = width
+  if (maxLineNum != null) style.maxLineNum = maxLineNum
+  if (unplayColor != null) style.unplayColor = unplayColor
+  if (playedColor != null) style.playedColor = playedColor
+  if (shadowColor != null) style.shadowColor = shadowColor
+  if (opacity != null) style.alpha = getAlpha(opacity)
+  if (textSize != null) style.textSize = getTextSize(textSize)
+  if (textPositionX != null) style.textX = textPositionX.toUpperCase()
+  if (textPositionY != null) style.textY = textPositionY.toUpperCase()
+  return LyricModule.updateStyle(style)
+}
+
+export const getTimingStats = async(): Promise<{
+  driftP50: number
+  driftP95: number
+  driftP99: number
+  skips: number
+  wakeups: number
+  wakeupsPerMinute: number
+  screenOffWakeups: number
+  screenOffWakeupsPerMinute: number
+  coalescedLines: number
+} | null> => {
+  return LyricModule.getTimingStats()
+}
+
+export const getLyricCacheStats = async(): Promise<{ memoryHits: number, diskHits: number, misses: number, size: number }> => {
+  return LyricModule.getLyricCacheStats()
+}
+
 export const checkOverlayPermission = async(): Promise<void> => {
   return LyricModule.checkOverlayPermission()
 }
@@ -232,12 +404,65 @@ export const onPositionChange = (handler: (position: { x: number, y: number }) =
 export const onLyricLinePlay = (handler: (lineInfo: { text: string, extendedLyrics: string[] }) => void): () => void => {
   // eslint-disable-next-line @typescript-eslint/no-unsafe-argument
   const eventEmitter = new NativeEventEmitter(LyricModule)
+  let batchTimeout: number | null = null
+  const clearBatchTimeout = () => {
+    if (batchTimeout == null) return
+    BackgroundTimer.clearTimeout(batchTimeout)
+    batchTimeout = null
+  }
   const eventListener = eventEmitter.addListener('lyric-line-play', event => {
+    clearBatchTimeout()
     handler(event as { text: string, extendedLyrics: string[] })
   })
 
+  // index only events, the text is taken from the timeline sent with the lyric
+  let timeline: LyricTimeline | null = null
+  const handleLineIndex = (index: number) => {
+    if (!timeline || index < 0 || index >= timeline.times.length) {
+      handler({ text: '', extendedLyrics: [] })
+      return
+    }
+    const extendedLyrics: string[] = []
+    for (let i = timeline.extendedOffsets[index]; i < timeline.extendedOffsets[index + 1]; i++) {
+      if (isTrackVisible(timeline, timeline.extendedTracks[i])) extendedLyrics.push(timeline.extendedTexts[i])
+    }
+    handler({ text: timeline.texts[index], extendedLyrics })
+  }
+  const timelineListener = eventEmitter.addListener('lyric-timeline', event => {
+    timeline = event as LyricTimeline
+  })
+  const indexListener = eventEmitter.addListener('lyric-line-index', event => {
+    clearBatchTimeout()
+    handleLineIndex((event as { index: number, time: number }).index)
+  })
+
+  // lookahead lines, played by the background timer
+  const batchListener = eventEmitter.addListener('lyric-line-batch', event => {
+    clearBatchTimeout()
+    const { lines, isContinue } = event as { lines: LyricBatchLine[], isContinue: boolean }
+    // the first line of a continued batch is already playing
+    let index = isContinue ? 1 : 0
+    const playLine = () => {
+      batchTimeout = null
+      const now = Date.now()
+      while (index + 1 < lines.length && lines[index + 1].time <= now) index++
+      const line = lines[index++]
+      if (line.text == null) handleLineIndex(line.index)
+      else handler({ text: line.text, extendedLyrics: line.extendedLyrics ?? [] })
+      if (index < lines.length) batchTimeout = BackgroundTimer.setTimeout(playLine, lines[index].time - now)
+    }
+    if (index >= lines.length) return
+    const delay = lines[index].time - Date.now()
+    if (delay > 0) batchTimeout = BackgroundTimer.setTimeout(playLine, delay)
+    else playLine()
+  })
+
   return () => {
+    clearBatchTimeout()
     eventListener.remove()
+    timelineListener.remove()
+    indexListener.remove()
+    batchListener.remove()
   }
 }
 